@@ -0,0 +1,146 @@
+package data;
+
+import model.Student;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stress test for ConcurrentDataHandler
+ *
+ * Runs point reads, searches and mutations from 1, 2, 4... threads up to the
+ * given count and prints the throughput of each run. Every student keeps its
+ * course equal to "C" + year, so a torn update shows up in a reader, and the
+ * seeded students are never deleted, so a lost record does too. After each run
+ * the handler is reopened from disk and compared with the expected count.
+ *
+ * Lives under bench/ so it stays out of the application build. From the
+ * directory compile.sh runs in, after compiling the application:
+ *
+ *   javac -cp bin -d bench-bin src/bench/data/*.java
+ *   java -cp bin:bench-bin data.ConcurrentDataHandlerStressTest [threads] [seconds] [students]
+ */
+public class ConcurrentDataHandlerStressTest {
+    private static final int MUTATION_PERCENT = 5;
+    private static final int SEARCH_PERCENT = 10;
+    
+    public static void main(String[] args) throws Exception {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0])
+                : Math.max(4, Runtime.getRuntime().availableProcessors());
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        int seeded = args.length > 2 ? Integer.parseInt(args[2]) : 20000;
+        System.out.println("cores=" + Runtime.getRuntime().availableProcessors()
+                + " students=" + seeded + " seconds=" + seconds);
+        
+        boolean failed = false;
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            failed |= !run(threads, seconds, seeded);
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+    
+    private static boolean run(int threads, int seconds, int seeded) throws Exception {
+        File dir = Files.createTempDirectory("students-stress").toFile();
+        String dataFile = new File(dir, "students.dat").getPath();
+        ConcurrentDataHandler handler = new ConcurrentDataHandler(
+                new FileDataHandler(dataFile, true, DurabilityPolicy.ASYNC));
+        List<Student> students = new ArrayList<>();
+        for (int i = 0; i < seeded; i++) {
+            students.add(student("S" + i, 1 + i % 4));
+        }
+        handler.addStudents(students);
+        
+        AtomicInteger errors = new AtomicInteger();
+        AtomicInteger added = new AtomicInteger();
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Long>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int worker = t;
+            results.add(executor.submit(() -> {
+                Random random = new Random(worker);
+                long operations = 0;
+                int next = 0;
+                while (System.nanoTime() < end) {
+                    int roll = random.nextInt(100);
+                    if (roll < MUTATION_PERCENT) {
+                        String id = "S" + random.nextInt(seeded);
+                        handler.updateStudent(student(id, 1 + random.nextInt(4)));
+                        if (random.nextBoolean()) {
+                            String extra = "T" + worker + "_" + next++;
+                            if (handler.addStudent(student(extra, 2))) {
+                                added.incrementAndGet();
+                            }
+                        } else if (next > 0) {
+                            String extra = "T" + worker + "_" + random.nextInt(next);
+                            if (handler.deleteStudent(extra)) {
+                                added.decrementAndGet();
+                            }
+                        }
+                    } else if (roll < MUTATION_PERCENT + SEARCH_PERCENT) {
+                        int year = 1 + random.nextInt(4);
+                        for (Student student : handler.search(s -> s.getYear() == year)) {
+                            if (student.getYear() != year || !consistent(student)) {
+                                errors.incrementAndGet();
+                            }
+                        }
+                    } else {
+                        Student student = handler.findStudentById("S" + random.nextInt(seeded));
+                        if (student == null || !consistent(student)) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                    operations++;
+                }
+                return operations;
+            }));
+        }
+        long operations = 0;
+        for (Future<Long> result : results) {
+            operations += result.get();
+        }
+        executor.shutdown();
+        
+        int expected = seeded + added.get();
+        int size = handler.getAllStudents().size();
+        handler.close();
+        FileDataHandler reopenedHandler = new FileDataHandler(dataFile, true, DurabilityPolicy.ASYNC);
+        int reopened = reopenedHandler.getAllStudents().size();
+        reopenedHandler.close();
+        delete(dir);
+        
+        boolean passed = errors.get() == 0 && size == expected && reopened == expected;
+        System.out.println(threads + " threads: " + (operations / seconds) + " ops/s, errors="
+                + errors.get() + ", size=" + size + ", reopened=" + reopened
+                + ", expected=" + expected + (passed ? "" : " FAILED"));
+        return passed;
+    }
+    
+    private static Student student(String id, int year) {
+        return new Student(id, "Name " + id, "C" + year, year, id + "@example.com", "555-0100");
+    }
+    
+    private static boolean consistent(Student student) {
+        return student.getCourse().equals("C" + student.getYear())
+                && student.getName().equals("Name " + student.getId());
+    }
+    
+    private static void delete(File dir) throws IOException {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+        Files.deleteIfExists(dir.toPath());
+    }
+}
@@ -0,0 +1,131 @@
+package data;
+
+import model.Student;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+/**
+ * Heap footprint and GC pause benchmark for OffHeapDataHandler against FileDataHandler
+ *
+ * Writes a students.dat of the given size, opens it with one engine and
+ * reports the load time, the heap in use after a full GC, the heap while a
+ * snapshot is held and scanned, and the GC time and longest pause over a phase
+ * of updates and full searches. It lives under bench/ so it stays out of the
+ * application build; compile it next to the application with
+ *
+ *   javac -cp bin -d bench-bin src/bench/data/*.java
+ *
+ * and run each engine in its own JVM with the same heap settings, e.g.
+ *
+ *   java -Xmx2g -XX:+UseSerialGC -cp bin:bench-bin data.OffHeapBenchmark file 1000000
+ *   java -Xmx2g -XX:+UseSerialGC -cp bin:bench-bin data.OffHeapBenchmark offheap 1000000
+ */
+public class OffHeapBenchmark {
+    private static final int UPDATES = 200000;
+    private static final int SEARCHES = 5;
+    
+    public static void main(String[] args) throws Exception {
+        String engine = args.length > 0 ? args[0] : "offheap";
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+        AtomicLong maxPause = new AtomicLong();
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ((NotificationEmitter) collector).addNotificationListener((notification, handback) -> {
+                if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                    long pause = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData())
+                            .getGcInfo().getDuration();
+                    maxPause.accumulateAndGet(pause, Math::max);
+                }
+            }, null, null);
+        }
+        
+        File dir = Files.createTempDirectory("students-bench").toFile();
+        File dataFile = new File(dir, "students.dat");
+        writeStudents(dataFile, count);
+        System.gc();
+        
+        long start = System.nanoTime();
+        DataHandler handler = engine.equals("file")
+                ? new FileDataHandler(dataFile.getPath(), true, DurabilityPolicy.ASYNC)
+                : new OffHeapDataHandler(dataFile.getPath());
+        long loadMs = (System.nanoTime() - start) / 1000000;
+        long heapAfterLoad = usedHeap();
+        
+        StudentSnapshot snapshot = handler.getSnapshot();
+        int scanned = 0;
+        for (Student student : snapshot.getStudents()) {
+            scanned += student.getYear() == 2 ? 1 : 0;
+        }
+        long heapWithSnapshot = usedHeap();
+        snapshot = null;
+        
+        long gcBefore = gcTime();
+        maxPause.set(0);
+        Random random = new Random(1);
+        start = System.nanoTime();
+        for (int i = 0; i < UPDATES; i++) {
+            Student student = handler.findStudentById("S" + random.nextInt(count));
+            student.setName(student.getName() + "!");
+            handler.updateStudent(student);
+        }
+        int matches = 0;
+        for (int i = 0; i < SEARCHES; i++) {
+            matches += handler.search(s -> s.getYear() == 2 && s.getName().endsWith("7")).size();
+        }
+        long workMs = (System.nanoTime() - start) / 1000000;
+        
+        System.out.println(engine + " students=" + count
+                + " load=" + loadMs + "ms"
+                + " heapAfterLoad=" + (heapAfterLoad >> 20) + "MB"
+                + " heapWithSnapshot=" + (heapWithSnapshot >> 20) + "MB (" + scanned + " in year 2)"
+                + " work=" + workMs + "ms (" + matches + " matches)"
+                + " gcTime=" + (gcTime() - gcBefore) + "ms"
+                + " maxPause=" + maxPause.get() + "ms");
+        handler.close();
+        delete(dir);
+    }
+    
+    private static void writeStudents(File file, int count) throws IOException {
+        List<Student> students = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            students.add(new Student("S" + i, "Student Name " + i, "Course" + (i % 40), 1 + i % 4,
+                    "student" + i + "@uni.edu", "555-" + i));
+        }
+        StudentFileFormat.write(file, students, StudentFileFormat.BINARY);
+    }
+    
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+    
+    private static long gcTime() {
+        long total = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += collector.getCollectionTime();
+        }
+        return total;
+    }
+    
+    private static void delete(File dir) throws IOException {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+        Files.deleteIfExists(dir.toPath());
+    }
+}
@@ -0,0 +1,511 @@
+package data;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Persistent B+tree over student IDs
+ *
+ * Keys live in 4 KB pages of a single file and are read on demand through a
+ * small LRU page cache, so point lookups, ordered iteration and range scans
+ * never load the whole key set. Leaves are chained left to right for scans.
+ * Changes are written through to the file immediately.
+ *
+ * Deletes only remove the key from its leaf (no merging), which keeps them
+ * cheap; space is reclaimed the next time the tree is bulk loaded.
+ *
+ * Page 0 is the header. Leaf pages: [type][count][next leaf][keys...];
+ * internal pages: [type][count][child 0][(key, child)...]. Keys are stored as
+ * a 2-byte length followed by UTF-8 bytes.
+ */
+public class BPlusTreeIndex implements Closeable {
+    private static final int PAGE_SIZE = 4096;
+    private static final int MAGIC = 0x53495349; // "SISI"
+    private static final int VERSION = 1;
+    private static final int MAX_KEY_BYTES = 255;
+    private static final int NODE_HEADER = 7; // type, count, next leaf / first child
+    private static final int BULK_FILL = PAGE_SIZE * 9 / 10; // leave room for later inserts
+    private static final int CACHE_PAGES = 1024;
+    private static final byte LEAF = 1;
+    private static final byte INTERNAL = 2;
+    private static final int NO_PAGE = -1;
+    
+    /**
+     * Decoded page; for internal nodes children.size() == keys.size() + 1
+     */
+    private static class Node {
+        final int page;
+        final boolean leaf;
+        final List<String> keys;
+        final List<Integer> children;
+        int next = NO_PAGE;
+        
+        Node(int page, boolean leaf, List<String> keys, List<Integer> children) {
+            this.page = page;
+            this.leaf = leaf;
+            this.keys = keys;
+            this.children = children;
+        }
+    }
+    
+    /**
+     * Result of splitting a node: the separator key and the new right sibling
+     */
+    private static class Split {
+        final String separator;
+        final int right;
+        
+        Split(String separator, int right) {
+            this.separator = separator;
+            this.right = right;
+        }
+    }
+    
+    private static final Split PRESENT = new Split(null, NO_PAGE); // key was already in the tree
+    
+    private final FileChannel channel;
+    private final Map<Integer, Node> cache = new LinkedHashMap<Integer, Node>(CACHE_PAGES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Node> eldest) {
+            return size() > CACHE_PAGES;
+        }
+    };
+    private int root;
+    private int pageCount;
+    private int firstLeaf;
+    private long size;
+    private long checksum;
+    
+    public BPlusTreeIndex(File file) throws IOException {
+        boolean created = !file.exists() || file.length() < PAGE_SIZE;
+        channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (created) {
+            reset();
+        } else {
+            readHeader();
+        }
+    }
+    
+    /**
+     * Number of keys in the tree
+     */
+    public synchronized long size() {
+        return size;
+    }
+    
+    public synchronized boolean contains(String key) {
+        Node node = readNode(root);
+        while (!node.leaf) {
+            node = readNode(node.children.get(childIndex(node, key)));
+        }
+        return Collections.binarySearch(node.keys, key) >= 0;
+    }
+    
+    /**
+     * Add a key; returns false if it was already present
+     */
+    public synchronized boolean insert(String key) {
+        checkKey(key);
+        Split split = insert(readNode(root), key);
+        if (split == PRESENT) {
+            return false;
+        }
+        if (split != null) {
+            List<String> keys = new ArrayList<>();
+            keys.add(split.separator);
+            List<Integer> children = new ArrayList<>();
+            children.add(root);
+            children.add(split.right);
+            Node newRoot = new Node(allocatePage(), false, keys, children);
+            writeNode(newRoot);
+            root = newRoot.page;
+        }
+        size++;
+        checksum ^= mix(key);
+        writeHeader();
+        return true;
+    }
+    
+    private Split insert(Node node, String key) {
+        if (node.leaf) {
+            int position = Collections.binarySearch(node.keys, key);
+            if (position >= 0) {
+                return PRESENT;
+            }
+            node.keys.add(-position - 1, key);
+            if (encodedSize(node) <= PAGE_SIZE) {
+                writeNode(node);
+                return null;
+            }
+            return splitLeaf(node);
+        }
+        
+        int index = childIndex(node, key);
+        Split split = insert(readNode(node.children.get(index)), key);
+        if (split == null || split == PRESENT) {
+            return split;
+        }
+        node.keys.add(index, split.separator);
+        node.children.add(index + 1, split.right);
+        if (encodedSize(node) <= PAGE_SIZE) {
+            writeNode(node);
+            return null;
+        }
+        return splitInternal(node);
+    }
+    
+    private Split splitLeaf(Node node) {
+        int mid = node.keys.size() / 2;
+        List<String> rightKeys = new ArrayList<>(node.keys.subList(mid, node.keys.size()));
+        node.keys.subList(mid, node.keys.size()).clear();
+        Node right = new Node(allocatePage(), true, rightKeys, null);
+        right.next = node.next;
+        node.next = right.page;
+        writeNode(right);
+        writeNode(node);
+        return new Split(rightKeys.get(0), right.page);
+    }
+    
+    private Split splitInternal(Node node) {
+        int mid = node.keys.size() / 2;
+        String separator = node.keys.get(mid);
+        List<String> rightKeys = new ArrayList<>(node.keys.subList(mid + 1, node.keys.size()));
+        List<Integer> rightChildren = new ArrayList<>(node.children.subList(mid + 1, node.children.size()));
+        node.keys.subList(mid, node.keys.size()).clear();
+        node.children.subList(mid + 1, node.children.size()).clear();
+        Node right = new Node(allocatePage(), false, rightKeys, rightChildren);
+        writeNode(right);
+        writeNode(node);
+        return new Split(separator, right.page);
+    }
+    
+    /**
+     * Remove a key; returns false if it was not present
+     */
+    public synchronized boolean delete(String key) {
+        Node node = readNode(root);
+        while (!node.leaf) {
+            node = readNode(node.children.get(childIndex(node, key)));
+        }
+        int position = Collections.binarySearch(node.keys, key);
+        if (position < 0) {
+            return false;
+        }
+        node.keys.remove(position);
+        writeNode(node);
+        size--;
+        checksum ^= mix(key);
+        writeHeader();
+        return true;
+    }
+    
+    /**
+     * Visit keys in ascending order starting at the first key >= from (or the
+     * smallest key if from is null) until the visitor returns false
+     */
+    public synchronized void scan(String from, Predicate<String> visitor) {
+        Node node;
+        if (from == null) {
+            node = readNode(firstLeaf);
+        } else {
+            node = readNode(root);
+            while (!node.leaf) {
+                node = readNode(node.children.get(childIndex(node, from)));
+            }
+        }
+        
+        while (true) {
+            for (String key : node.keys) {
+                if ((from == null || key.compareTo(from) >= 0) && !visitor.test(key)) {
+                    return;
+                }
+            }
+            if (node.next == NO_PAGE) {
+                return;
+            }
+            node = readNode(node.next);
+        }
+    }
+    
+    /**
+     * Keys between from and to (both inclusive, either may be null), at most limit of them
+     */
+    public List<String> range(String from, String to, int limit) {
+        List<String> keys = new ArrayList<>();
+        if (limit <= 0) {
+            return keys;
+        }
+        scan(from, key -> {
+            if (to != null && key.compareTo(to) > 0) {
+                return false;
+            }
+            keys.add(key);
+            return keys.size() < limit;
+        });
+        return keys;
+    }
+    
+    /**
+     * Quick consistency check against a key set: same size and same order-independent checksum
+     */
+    public synchronized boolean matches(Collection<String> keys) {
+        if (keys.size() != size) {
+            return false;
+        }
+        long expected = 0;
+        for (String key : keys) {
+            expected ^= mix(key);
+        }
+        return expected == checksum;
+    }
+    
+    /**
+     * Replace the whole tree with the given keys, building it bottom-up from sorted input
+     */
+    public synchronized void bulkLoad(Collection<String> keys) {
+        List<String> sorted = new ArrayList<>(keys);
+        Collections.sort(sorted);
+        reset();
+        if (sorted.isEmpty()) {
+            return;
+        }
+        
+        // Leaves
+        List<String> levelKeys = new ArrayList<>();
+        List<Integer> levelPages = new ArrayList<>();
+        Node leaf = null;
+        int used = 0;
+        String previous = null;
+        for (String key : sorted) {
+            if (key.equals(previous)) {
+                continue;
+            }
+            checkKey(key);
+            previous = key;
+            int keySize = 2 + utf8Length(key);
+            if (leaf == null || used + keySize > BULK_FILL) {
+                Node next = leaf == null ? readNode(root) : new Node(allocatePage(), true, new ArrayList<>(), null);
+                if (leaf != null) {
+                    leaf.next = next.page;
+                    writeNode(leaf);
+                }
+                leaf = next;
+                used = NODE_HEADER;
+                levelKeys.add(key);
+                levelPages.add(leaf.page);
+            }
+            leaf.keys.add(key);
+            used += keySize;
+            size++;
+            checksum ^= mix(key);
+        }
+        writeNode(leaf);
+        
+        // Internal levels until a single root remains
+        while (levelPages.size() > 1) {
+            List<String> parentKeys = new ArrayList<>();
+            List<Integer> parentPages = new ArrayList<>();
+            Node parent = null;
+            used = 0;
+            for (int i = 0; i < levelPages.size(); i++) {
+                int keySize = 2 + utf8Length(levelKeys.get(i)) + 4;
+                if (parent == null || used + keySize > BULK_FILL) {
+                    if (parent != null) {
+                        writeNode(parent);
+                    }
+                    List<Integer> children = new ArrayList<>();
+                    children.add(levelPages.get(i));
+                    parent = new Node(allocatePage(), false, new ArrayList<>(), children);
+                    used = NODE_HEADER;
+                    parentKeys.add(levelKeys.get(i));
+                    parentPages.add(parent.page);
+                } else {
+                    parent.keys.add(levelKeys.get(i));
+                    parent.children.add(levelPages.get(i));
+                    used += keySize;
+                }
+            }
+            writeNode(parent);
+            levelKeys = parentKeys;
+            levelPages = parentPages;
+        }
+        root = levelPages.get(0);
+        writeHeader();
+    }
+    
+    /**
+     * Force pending writes to disk
+     */
+    public synchronized void flush() throws IOException {
+        channel.force(false);
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+    
+    private void reset() {
+        try {
+            channel.truncate(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        cache.clear();
+        pageCount = 1; // header
+        size = 0;
+        checksum = 0;
+        Node leaf = new Node(allocatePage(), true, new ArrayList<>(), null);
+        writeNode(leaf);
+        root = leaf.page;
+        firstLeaf = leaf.page;
+        writeHeader();
+    }
+    
+    private int childIndex(Node node, String key) {
+        int position = Collections.binarySearch(node.keys, key);
+        return position >= 0 ? position + 1 : -position - 1;
+    }
+    
+    private int allocatePage() {
+        return pageCount++;
+    }
+    
+    private static void checkKey(String key) {
+        if (key == null || utf8Length(key) > MAX_KEY_BYTES) {
+            throw new IllegalArgumentException("Index keys must be non-null and at most " + MAX_KEY_BYTES + " bytes");
+        }
+    }
+    
+    private static long mix(String key) {
+        long h = key.hashCode() * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+    
+    private static int encodedSize(Node node) {
+        int size = NODE_HEADER;
+        for (String key : node.keys) {
+            size += 2 + utf8Length(key);
+        }
+        return node.leaf ? size : size + 4 * node.keys.size();
+    }
+    
+    private static int utf8Length(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+    
+    private Node readNode(int page) {
+        Node node = cache.get(page);
+        if (node != null) {
+            return node;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(PAGE_SIZE);
+        try {
+            channel.read(buffer, (long) page * PAGE_SIZE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error reading index page " + page, e);
+        }
+        buffer.flip();
+        
+        boolean leaf = buffer.get() == LEAF;
+        int count = buffer.getShort();
+        int link = buffer.getInt();
+        List<String> keys = new ArrayList<>(count + 1);
+        List<Integer> children = leaf ? null : new ArrayList<>(count + 2);
+        if (!leaf) {
+            children.add(link);
+        }
+        for (int i = 0; i < count; i++) {
+            byte[] bytes = new byte[buffer.getShort()];
+            buffer.get(bytes);
+            keys.add(new String(bytes, StandardCharsets.UTF_8));
+            if (!leaf) {
+                children.add(buffer.getInt());
+            }
+        }
+        node = new Node(page, leaf, keys, children);
+        if (leaf) {
+            node.next = link;
+        }
+        cache.put(page, node);
+        return node;
+    }
+    
+    private void writeNode(Node node) {
+        ByteBuffer buffer = ByteBuffer.allocate(PAGE_SIZE);
+        buffer.put(node.leaf ? LEAF : INTERNAL);
+        buffer.putShort((short) node.keys.size());
+        buffer.putInt(node.leaf ? node.next : node.children.get(0));
+        for (int i = 0; i < node.keys.size(); i++) {
+            byte[] bytes = node.keys.get(i).getBytes(StandardCharsets.UTF_8);
+            buffer.putShort((short) bytes.length);
+            buffer.put(bytes);
+            if (!node.leaf) {
+                buffer.putInt(node.children.get(i + 1));
+            }
+        }
+        buffer.rewind();
+        try {
+            channel.write(buffer, (long) node.page * PAGE_SIZE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing index page " + node.page, e);
+        }
+        cache.put(node.page, node);
+    }
+    
+    private void readHeader() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(40);
+        channel.read(buffer, 0);
+        buffer.flip();
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("Not a student ID index");
+        }
+        root = buffer.getInt();
+        pageCount = buffer.getInt();
+        firstLeaf = buffer.getInt();
+        size = buffer.getLong();
+        checksum = buffer.getLong();
+    }
+    
+    private void writeHeader() {
+        ByteBuffer buffer = ByteBuffer.allocate(40);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(root);
+        buffer.putInt(pageCount);
+        buffer.putInt(firstLeaf);
+        buffer.putLong(size);
+        buffer.putLong(checksum);
+        buffer.flip();
+        try {
+            channel.write(buffer, 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing index header", e);
+        }
+    }
+}
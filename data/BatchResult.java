@@ -0,0 +1,75 @@
+package data;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-row outcome of a bulk insert or upsert
+ * Rows are identified by their position in the submitted collection
+ */
+public class BatchResult {
+    
+    /**
+     * What happened to a single row of a batch
+     */
+    public enum Outcome {
+        INSERTED, UPDATED, DUPLICATE, FAILED
+    }
+    
+    private final Outcome[] outcomes;
+    private final Map<Integer, String> messages = new HashMap<>();
+    
+    public BatchResult(int size) {
+        this.outcomes = new Outcome[size];
+    }
+    
+    public void record(int row, Outcome outcome) {
+        outcomes[row] = outcome;
+    }
+    
+    /**
+     * Mark a row as failed with a reason
+     */
+    public void fail(int row, String message) {
+        outcomes[row] = Outcome.FAILED;
+        messages.put(row, message);
+    }
+    
+    public Outcome getOutcome(int row) {
+        return outcomes[row];
+    }
+    
+    /**
+     * Failure reason for a row, or null if the row did not fail
+     */
+    public String getMessage(int row) {
+        return messages.get(row);
+    }
+    
+    public int size() {
+        return outcomes.length;
+    }
+    
+    /**
+     * Number of rows with the given outcome
+     */
+    public int count(Outcome outcome) {
+        int count = 0;
+        for (Outcome o : outcomes) {
+            if (o == outcome) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    @Override
+    public String toString() {
+        return "BatchResult{" +
+                "inserted=" + count(Outcome.INSERTED) +
+                ", updated=" + count(Outcome.UPDATED) +
+                ", duplicate=" + count(Outcome.DUPLICATE) +
+                ", failed=" + count(Outcome.FAILED) +
+                '}';
+    }
+}
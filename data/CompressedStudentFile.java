@@ -0,0 +1,230 @@
+package data;
+
+import model.Student;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Block-compressed student file
+ *
+ * Records (the layout of StudentRecordWriter.writeRecord) are packed into
+ * blocks of about BLOCK_SIZE raw bytes, each compressed on its own with
+ * Deflater. A block index at the end of the file holds, per block, its file
+ * offset, compressed and raw length, record count and the CRC32 of the raw
+ * bytes, so blocks can be located, inflated and verified independently.
+ * Reading inflates all blocks in parallel.
+ *
+ * Layout: [magic "SISZ"][version][record count][blocks...]
+ *         [index: per block offset, compressed length, raw length, records, crc]
+ *         [block count][index offset]
+ */
+final class CompressedStudentFile {
+    static final int MAGIC = 0x5349535A; // "SISZ"
+    private static final int VERSION = 1;
+    private static final int BLOCK_SIZE = 64 * 1024;
+    private static final int HEADER_SIZE = 9;
+    private static final int INDEX_ENTRY_SIZE = 24;
+    private static final int TRAILER_SIZE = 12;
+    
+    /**
+     * Location and checksum of one compressed block
+     */
+    private static class Block {
+        final long offset;
+        final int compressedLength;
+        final int rawLength;
+        final int records;
+        final int crc;
+        
+        Block(long offset, int compressedLength, int rawLength, int records, int crc) {
+            this.offset = offset;
+            this.compressedLength = compressedLength;
+            this.rawLength = rawLength;
+            this.records = records;
+            this.crc = crc;
+        }
+    }
+    
+    private CompressedStudentFile() {
+    }
+    
+    static void write(File file, List<Student> students) throws IOException {
+        List<Block> blocks = new ArrayList<>();
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeInt(students.size());
+            long position = HEADER_SIZE;
+            
+            ByteArrayOutputStream raw = new ByteArrayOutputStream(BLOCK_SIZE + 1024);
+            DataOutputStream records = new DataOutputStream(raw);
+            int count = 0;
+            for (int i = 0; i < students.size(); i++) {
+                StudentRecordWriter.writeRecord(records, students.get(i));
+                count++;
+                if (raw.size() >= BLOCK_SIZE || i == students.size() - 1) {
+                    Block block = writeBlock(out, deflater, raw.toByteArray(), count, position);
+                    blocks.add(block);
+                    position += block.compressedLength;
+                    raw.reset();
+                    count = 0;
+                }
+            }
+            
+            for (Block block : blocks) {
+                out.writeLong(block.offset);
+                out.writeInt(block.compressedLength);
+                out.writeInt(block.rawLength);
+                out.writeInt(block.records);
+                out.writeInt(block.crc);
+            }
+            out.writeInt(blocks.size());
+            out.writeLong(position);
+        } finally {
+            deflater.end();
+        }
+    }
+    
+    private static Block writeBlock(DataOutputStream out, Deflater deflater, byte[] raw, int records, long position)
+            throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(raw, 0, raw.length);
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        byte[] buffer = new byte[8192];
+        int compressed = 0;
+        while (!deflater.finished()) {
+            int n = deflater.deflate(buffer);
+            out.write(buffer, 0, n);
+            compressed += n;
+        }
+        return new Block(position, compressed, raw.length, records, (int) crc.getValue());
+    }
+    
+    /**
+     * Read every student, inflating and decoding the blocks in parallel
+     */
+    static List<Student> read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            List<Block> blocks = readIndex(channel);
+            List<byte[]> compressed = new ArrayList<>(blocks.size());
+            for (Block block : blocks) {
+                ByteBuffer buffer = ByteBuffer.allocate(block.compressedLength);
+                readFully(channel, buffer, block.offset);
+                compressed.add(buffer.array());
+            }
+            
+            List<List<Student>> decoded;
+            try {
+                decoded = IntStream.range(0, blocks.size()).parallel()
+                        .mapToObj(i -> decodeBlock(blocks.get(i), compressed.get(i)))
+                        .collect(Collectors.toList());
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            
+            List<Student> students = new ArrayList<>();
+            for (List<Student> part : decoded) {
+                students.addAll(part);
+            }
+            return students;
+        }
+    }
+    
+    private static List<Block> readIndex(FileChannel channel) throws IOException {
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(channel, header, 0);
+        header.flip();
+        if (size < HEADER_SIZE + TRAILER_SIZE || header.getInt() != MAGIC) {
+            throw new IOException("Not a compressed student file");
+        }
+        int version = header.get() & 0xFF;
+        if (version > VERSION) {
+            throw new IOException("Unsupported compressed file version " + version);
+        }
+        int recordCount = header.getInt();
+        
+        ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+        readFully(channel, trailer, size - TRAILER_SIZE);
+        trailer.flip();
+        int blockCount = trailer.getInt();
+        long indexOffset = trailer.getLong();
+        if (blockCount < 0 || indexOffset + (long) blockCount * INDEX_ENTRY_SIZE != size - TRAILER_SIZE) {
+            throw new IOException("Corrupt block index");
+        }
+        
+        ByteBuffer index = ByteBuffer.allocate(blockCount * INDEX_ENTRY_SIZE);
+        readFully(channel, index, indexOffset);
+        index.flip();
+        List<Block> blocks = new ArrayList<>(blockCount);
+        int total = 0;
+        for (int i = 0; i < blockCount; i++) {
+            Block block = new Block(index.getLong(), index.getInt(), index.getInt(), index.getInt(), index.getInt());
+            if (block.offset < HEADER_SIZE || block.offset + block.compressedLength > indexOffset) {
+                throw new IOException("Block " + i + " lies outside the data area");
+            }
+            total += block.records;
+            blocks.add(block);
+        }
+        if (total != recordCount) {
+            throw new IOException("Header declares " + recordCount + " records but blocks hold " + total);
+        }
+        return blocks;
+    }
+    
+    private static List<Student> decodeBlock(Block block, byte[] compressed) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] raw = new byte[block.rawLength];
+            int length = 0;
+            while (length < raw.length && !inflater.finished()) {
+                int n = inflater.inflate(raw, length, raw.length - length);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += n;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(raw, 0, length);
+            if (length != raw.length || (int) crc.getValue() != block.crc) {
+                throw new IOException("Checksum mismatch in block at offset " + block.offset);
+            }
+            
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw));
+            List<Student> students = new ArrayList<>(block.records);
+            for (int i = 0; i < block.records; i++) {
+                students.add(StudentRecordReader.readRecord(in));
+            }
+            return students;
+        } catch (DataFormatException e) {
+            throw new UncheckedIOException(new IOException("Corrupt block at offset " + block.offset, e));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+    
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0) {
+                throw new EOFException("Unexpected end of compressed student file");
+            }
+        }
+    }
+}
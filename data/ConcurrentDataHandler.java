@@ -0,0 +1,347 @@
+package data;
+
+import model.Student;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Predicate;
+
+/**
+ * Thread-safe DataHandler decorator for serving many worker threads
+ *
+ * Writers are serialized through the write lock of a StampedLock and persist
+ * through the wrapped handler. Point reads go to a ConcurrentHashMap without any
+ * locking, and full reads use an optimistic stamp to pick up the immutable
+ * snapshot published after the last write, falling back to the read lock only
+ * when a writer got in the way or the snapshot has to be rebuilt.
+ *
+ * The ID map follows the change events of the wrapped handler, which are
+ * collected under the write lock and published as this handler's events once
+ * the lock is released, so listeners can read from the handler. Events the
+ * wrapped handler publishes on its own (e.g. a shared FileDataHandler picking
+ * up another process's changes) are applied by a relay thread.
+ */
+public class ConcurrentDataHandler extends DataHandler {
+    private final DataHandler delegate;
+    private final StampedLock lock = new StampedLock();
+    private final ConcurrentHashMap<String, Student> byId = new ConcurrentHashMap<>();
+    private volatile StudentSnapshot snapshot;
+    private final List<StudentChangeEvent> relayed = new ArrayList<>();
+    private volatile Thread writer;
+    private ExecutorService relayExecutor;
+    
+    public ConcurrentDataHandler(DataHandler delegate) {
+        this.delegate = delegate;
+        reindex(delegate.getAllStudents());
+        markChanged();
+        snapshot = new StudentSnapshot(getVersion(), delegate.getAllStudents());
+        delegate.addChangeListener(events -> {
+            synchronized (relayed) {
+                relayed.addAll(events);
+            }
+            if (writer != Thread.currentThread()) {
+                relayLater();
+            }
+        });
+    }
+    
+    private void reindex(List<Student> students) {
+        byId.clear();
+        for (Student student : students) {
+            byId.put(student.getId(), student);
+        }
+    }
+    
+    private long lockWrite() {
+        long stamp = lock.writeLock();
+        writer = Thread.currentThread();
+        return stamp;
+    }
+    
+    private void unlockWrite(long stamp) {
+        writer = null;
+        lock.unlockWrite(stamp);
+    }
+    
+    /**
+     * Apply events published outside a write of this handler on the relay thread,
+     * since the publishing thread may hold locks a writer here is waiting for
+     */
+    private synchronized void relayLater() {
+        if (relayExecutor == null) {
+            relayExecutor = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "students-relay");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        relayExecutor.execute(() -> {
+            long stamp = lockWrite();
+            try {
+                invalidate();
+            } finally {
+                unlockWrite(stamp);
+                publishChanges();
+            }
+        });
+    }
+    
+    @Override
+    public List<Student> loadStudents() {
+        long stamp = lockWrite();
+        try {
+            List<Student> students = delegate.loadStudents();
+            invalidate();
+            return students;
+        } finally {
+            unlockWrite(stamp);
+            publishChanges();
+        }
+    }
+    
+    @Override
+    public void saveStudents(List<Student> students) {
+        long stamp = lockWrite();
+        try {
+            delegate.saveStudents(students);
+            invalidate();
+        } finally {
+            unlockWrite(stamp);
+            publishChanges();
+        }
+    }
+    
+    @Override
+    public boolean addStudent(Student student) {
+        long stamp = lockWrite();
+        try {
+            boolean added = delegate.addStudent(student);
+            invalidate();
+            return added;
+        } finally {
+            unlockWrite(stamp);
+            publishChanges();
+        }
+    }
+    
+    @Override
+    public boolean updateStudent(Student student) {
+        long stamp = lockWrite();
+        try {
+            boolean updated = delegate.updateStudent(student);
+            invalidate();
+            return updated;
+        } finally {
+            unlockWrite(stamp);
+            publishChanges();
+        }
+    }
+    
+    @Override
+    public boolean deleteStudent(String id) {
+        long stamp = lockWrite();
+        try {
+            boolean deleted = delegate.deleteStudent(id);
+            invalidate();
+            return deleted;
+        } finally {
+            unlockWrite(stamp);
+            publishChanges();
+        }
+    }
+    
+    @Override
+    public BatchResult addStudents(Collection<Student> students) {
+        long stamp = lockWrite();
+        try {
+            BatchResult result = delegate.addStudents(students);
+            invalidate();
+            return result;
+        } finally {
+            unlockWrite(stamp);
+            publishChanges();
+        }
+    }
+    
+    @Override
+    public BatchResult upsertStudents(Collection<Student> students) {
+        long stamp = lockWrite();
+        try {
+            BatchResult result = delegate.upsertStudents(students);
+            invalidate();
+            return result;
+        } finally {
+            unlockWrite(stamp);
+            publishChanges();
+        }
+    }
+    
+    /**
+     * Take over the events the wrapped handler published, mirror them into the
+     * ID map and relay them; called under the write lock
+     *
+     * @return false if there was nothing to relay
+     */
+    private boolean relay() {
+        List<StudentChangeEvent> events;
+        synchronized (relayed) {
+            if (relayed.isEmpty()) {
+                return false;
+            }
+            events = new ArrayList<>(relayed);
+            relayed.clear();
+        }
+        boolean reloaded = false;
+        for (StudentChangeEvent event : events) {
+            switch (event.getType()) {
+                case INSERTED:
+                case UPDATED:
+                    byId.put(event.getId(), event.getNewStudent());
+                    break;
+                case DELETED:
+                    byId.remove(event.getId());
+                    break;
+                default:
+                    reloaded = true;
+                    break;
+            }
+        }
+        if (reloaded) {
+            reindex(delegate.getAllStudents());
+        }
+        relayChanges(events);
+        return true;
+    }
+    
+    /**
+     * Relay the wrapped handler's events, bump the version and drop the published snapshot
+     * if anything changed; called under the write lock
+     */
+    private void invalidate() {
+        if (relay()) {
+            markChanged();
+            snapshot = null;
+        }
+    }
+    
+    /**
+     * Lock-free point lookup
+     */
+    @Override
+    public Student findStudentById(String id) {
+        Student student = byId.get(id);
+        return student != null ? new Student(student) : null;
+    }
+    
+    /**
+     * Snapshot shared between readers until the next write
+     */
+    @Override
+    public StudentSnapshot getSnapshot() {
+        long stamp = lock.tryOptimisticRead();
+        StudentSnapshot current = snapshot;
+        if (current != null && lock.validate(stamp)) {
+            return current;
+        }
+        
+        stamp = lock.readLock();
+        try {
+            current = snapshot;
+            if (current == null) {
+                current = new StudentSnapshot(getVersion(), delegate.getAllStudents());
+                snapshot = current; // no writer can run while the read lock is held
+            }
+            return current;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    
+    @Override
+    public List<Student> getAllStudents() {
+        return getSnapshot().getStudents();
+    }
+    
+    /**
+     * The wrapped handler may be able to read its columns without loading students
+     */
+    @Override
+    public StudentColumns getColumns() {
+        long stamp = lock.readLock();
+        try {
+            return delegate.getColumns();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    
+    /**
+     * Ordered queries go to the wrapped handler, which may have an ID index
+     */
+    @Override
+    public List<Student> findStudentsByIdRange(String fromId, String toId) {
+        long stamp = lock.readLock();
+        try {
+            return delegate.findStudentsByIdRange(fromId, toId);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    
+    @Override
+    public List<Student> getStudentsInIdOrder(String afterId, int limit) {
+        long stamp = lock.readLock();
+        try {
+            return delegate.getStudentsInIdOrder(afterId, limit);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    
+    @Override
+    public List<Student> findStudentsByIds(Collection<String> ids) {
+        long stamp = lock.readLock();
+        try {
+            return delegate.findStudentsByIds(ids);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    
+    /**
+     * Scans go to the wrapped handler, which may filter its partitions in parallel
+     */
+    @Override
+    public List<Student> search(Predicate<Student> predicate) {
+        long stamp = lock.readLock();
+        try {
+            return delegate.search(predicate);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    
+    @Override
+    public void flush() {
+        delegate.flush();
+    }
+    
+    @Override
+    public void close() {
+        long stamp = lockWrite();
+        try {
+            delegate.close();
+        } finally {
+            unlockWrite(stamp);
+        }
+        synchronized (this) {
+            if (relayExecutor != null) {
+                relayExecutor.shutdown();
+            }
+        }
+    }
+}
@@ -1,13 +1,35 @@
 package data;
 
 import model.Student;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 /**
  * Abstract class demonstrating Abstraction
  * Defines the contract for data operations without implementation details
+ *
+ * Handlers never keep a Student object they were given or hand out one they
+ * keep: they store copies and findStudentById and findStudentsByIds return
+ * copies, so the old value of an UPDATED event is what was stored even if the
+ * caller changed an object it got back. The students of a snapshot are shared
+ * and must not be modified.
  */
 public abstract class DataHandler {
+    private final AtomicLong version = new AtomicLong();
+    private volatile StudentSnapshot snapshot;
+    private volatile StudentColumns columns;
+    private final List<StudentChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final List<StudentChangeEvent> pendingEvents = new ArrayList<>();
+    private final Object deliveryLock = new Object();
     
     /**
      * Load all students from data source
@@ -21,11 +43,17 @@ public abstract class DataHandler {
     
     /**
      * Add a new student
+     *
+     * @return false if a student with the same ID exists
+     * @throws IllegalArgumentException if the storage engine cannot hold the student (e.g. a record too long)
      */
     public abstract boolean addStudent(Student student);
     
     /**
      * Update an existing student
+     *
+     * @return false if no student has this ID
+     * @throws IllegalArgumentException if the storage engine cannot hold the student (e.g. a record too long)
      */
     public abstract boolean updateStudent(Student student);
     
@@ -36,6 +64,8 @@ public abstract class DataHandler {
     
     /**
      * Find a student by ID
+     *
+     * @return a copy, so changing it has no effect until it is passed to updateStudent
      */
     public abstract Student findStudentById(String id);
     
@@ -43,5 +73,265 @@ public abstract class DataHandler {
      * Get all students
      */
     public abstract List<Student> getAllStudents();
+    
+    /**
+     * Find all students matching a predicate, in snapshot order
+     * Large snapshots are filtered in parallel partitions (see ParallelScan), so the
+     * predicate must be safe to call from several threads; partitioned handlers
+     * override this to scan their own partitions in parallel
+     */
+    public List<Student> search(Predicate<Student> predicate) {
+        return ParallelScan.filter(getSnapshot().getStudents(), predicate);
+    }
+    
+    /**
+     * Copies of the students with the given IDs in snapshot order, so index lookups return
+     * them in the same order as a scan; unknown IDs are skipped
+     * This scans a full snapshot; handlers that know where each ID sits override it
+     */
+    public List<Student> findStudentsByIds(Collection<String> ids) {
+        Set<String> wanted = ids instanceof Set ? (Set<String>) ids : new HashSet<>(ids);
+        return search(student -> wanted.contains(student.getId())).stream()
+                .map(Student::new)
+                .collect(Collectors.toList());
+    }
+    
+    /**
+     * Students with IDs between fromId and toId (inclusive, either may be null), in ID order
+     * This sorts a full snapshot; IdIndexedDataHandler answers it from its B+tree
+     */
+    public List<Student> findStudentsByIdRange(String fromId, String toId) {
+        return getSnapshot().getStudents().stream()
+                .filter(s -> (fromId == null || s.getId().compareTo(fromId) >= 0)
+                        && (toId == null || s.getId().compareTo(toId) <= 0))
+                .sorted(Comparator.comparing(Student::getId))
+                .collect(Collectors.toList());
+    }
+    
+    /**
+     * Up to limit students in ID order, starting after afterId (from the start if null)
+     */
+    public List<Student> getStudentsInIdOrder(String afterId, int limit) {
+        return getSnapshot().getStudents().stream()
+                .filter(s -> afterId == null || s.getId().compareTo(afterId) > 0)
+                .sorted(Comparator.comparing(Student::getId))
+                .limit(Math.max(0, limit))
+                .collect(Collectors.toList());
+    }
+    
+    /**
+     * Current data version, incremented by every mutation
+     */
+    public long getVersion() {
+        return version.get();
+    }
+    
+    /**
+     * Record that the data has changed; subclasses call this (or one of the record methods) from every mutation
+     */
+    protected void markChanged() {
+        version.incrementAndGet();
+    }
+    
+    /**
+     * Subscribe to changes made through this handler
+     */
+    public void addChangeListener(StudentChangeListener listener) {
+        listeners.add(listener);
+    }
+    
+    public void removeChangeListener(StudentChangeListener listener) {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * True if anyone is listening; handlers can skip looking up old values otherwise
+     */
+    protected boolean hasChangeListeners() {
+        return !listeners.isEmpty();
+    }
+    
+    protected void recordInserted(Student student) {
+        markChanged();
+        queue(StudentChangeEvent.inserted(student));
+    }
+    
+    protected void recordUpdated(Student oldStudent, Student newStudent) {
+        markChanged();
+        queue(StudentChangeEvent.updated(oldStudent, newStudent));
+    }
+    
+    protected void recordDeleted(Student student) {
+        markChanged();
+        queue(StudentChangeEvent.deleted(student));
+    }
+    
+    /**
+     * Record that all students were replaced; events still pending are superseded
+     */
+    protected void recordReloaded() {
+        markChanged();
+        synchronized (pendingEvents) {
+            pendingEvents.clear();
+        }
+        queue(StudentChangeEvent.reloaded());
+    }
+    
+    /**
+     * Queue events received from a wrapped handler as changes of this one
+     */
+    protected void relayChanges(List<StudentChangeEvent> events) {
+        for (StudentChangeEvent event : events) {
+            if (event.getType() == StudentChangeEvent.Type.RELOADED) {
+                recordReloaded();
+            } else {
+                markChanged();
+                queue(event);
+            }
+        }
+    }
+    
+    private void queue(StudentChangeEvent event) {
+        if (hasChangeListeners()) {
+            synchronized (pendingEvents) {
+                pendingEvents.add(event);
+            }
+        }
+    }
+    
+    /**
+     * Deliver the queued events to every listener as one batch
+     * Handlers call this at the end of each mutating operation
+     */
+    protected void publishChanges() {
+        synchronized (deliveryLock) {
+            List<StudentChangeEvent> events;
+            synchronized (pendingEvents) {
+                if (pendingEvents.isEmpty()) {
+                    return;
+                }
+                events = Collections.unmodifiableList(new ArrayList<>(pendingEvents));
+                pendingEvents.clear();
+            }
+            for (StudentChangeListener listener : listeners) {
+                try {
+                    listener.onChanges(events);
+                } catch (RuntimeException e) {
+                    System.err.println("Error in change listener: " + e.getMessage());
+                }
+            }
+        }
+    }
+    
+    /**
+     * Immutable view of all students at the current version
+     * The view is built once per version and then shared by all callers
+     */
+    public StudentSnapshot getSnapshot() {
+        StudentSnapshot current = snapshot;
+        long currentVersion = version.get(); // read before the data so the label is never newer
+        if (current != null && current.getVersion() == currentVersion) {
+            return current;
+        }
+        current = readSnapshot(currentVersion);
+        snapshot = current;
+        return current;
+    }
+    
+    /**
+     * Column-oriented view of the fields used by aggregate reports
+     * Built once per version like the snapshot
+     */
+    public StudentColumns getColumns() {
+        StudentColumns current = columns;
+        long currentVersion = version.get();
+        if (current != null && current.getVersion() == currentVersion) {
+            return current;
+        }
+        current = readColumns(currentVersion);
+        columns = current;
+        return current;
+    }
+    
+    /**
+     * Build the columns for a version; handlers with persisted column files can read those instead
+     */
+    protected StudentColumns readColumns(long version) {
+        return StudentColumns.of(version, getSnapshot().getStudents());
+    }
+    
+    /**
+     * Build the snapshot for a version; handlers that cannot afford a list of
+     * materialized students can return a view instead
+     */
+    protected StudentSnapshot readSnapshot(long version) {
+        return new StudentSnapshot(version, readAllStudents());
+    }
+    
+    /**
+     * Read every student from the underlying storage to build a snapshot
+     */
+    protected List<Student> readAllStudents() {
+        return getAllStudents();
+    }
+    
+    /**
+     * IDs of all students, for indexes that need nothing else
+     * Handlers that can list IDs without materializing students override this
+     */
+    protected List<String> readStudentIds() {
+        List<Student> students = getAllStudents();
+        List<String> ids = new ArrayList<>(students.size());
+        for (Student student : students) {
+            ids.add(student.getId());
+        }
+        return ids;
+    }
+    
+    /**
+     * Write any changes that are still pending to the data source
+     * Handlers that persist synchronously have nothing to do
+     */
+    public void flush() {
+    }
+    
+    /**
+     * Flush pending changes and release files and threads held by the handler
+     */
+    public void close() {
+        flush();
+    }
+    
+    /**
+     * Add many students at once, skipping IDs that already exist
+     * Implementations should override this to persist the whole batch once
+     */
+    public BatchResult addStudents(Collection<Student> students) {
+        BatchResult result = new BatchResult(students.size());
+        int row = 0;
+        for (Student student : students) {
+            result.record(row++, addStudent(student) ? BatchResult.Outcome.INSERTED : BatchResult.Outcome.DUPLICATE);
+        }
+        return result;
+    }
+    
+    /**
+     * Insert new students and update existing ones
+     * Implementations should override this to persist the whole batch once
+     */
+    public BatchResult upsertStudents(Collection<Student> students) {
+        BatchResult result = new BatchResult(students.size());
+        int row = 0;
+        for (Student student : students) {
+            if (updateStudent(student)) {
+                result.record(row++, BatchResult.Outcome.UPDATED);
+            } else if (addStudent(student)) {
+                result.record(row++, BatchResult.Outcome.INSERTED);
+            } else {
+                result.fail(row++, "Could not store student " + student.getId());
+            }
+        }
+        return result;
+    }
 }
 
@@ -0,0 +1,33 @@
+package data;
+
+/**
+ * When changes made through a DataHandler reach the disk
+ */
+public enum DurabilityPolicy {
+    /** Every mutation is written and forced to disk before it returns */
+    SYNC,
+    /** Mutations return after the in-memory update; a flusher writes and forces
+     *  pending changes together every interval or after a number of changes */
+    GROUP_COMMIT,
+    /** Mutations return after the in-memory update; a flusher hands pending changes
+     *  to the operating system periodically without forcing them to disk */
+    ASYNC;
+    
+    public static final String PROPERTY = "sis.durability";
+    
+    /**
+     * Policy selected by the "sis.durability" system property, GROUP_COMMIT if unset or unknown
+     */
+    public static DurabilityPolicy configured() {
+        String value = System.getProperty(PROPERTY);
+        if (value == null || value.trim().isEmpty()) {
+            return GROUP_COMMIT;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown durability policy '" + value + "', using " + GROUP_COMMIT);
+            return GROUP_COMMIT;
+        }
+    }
+}
@@ -2,96 +2,802 @@ package data;
 
 import model.Student;
 import java.io.*;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * File-based data handler demonstrating Inheritance
  * Extends abstract DataHandler and provides concrete implementation
+ *
+ * In journaled mode (the default) students.dat is only a snapshot: every change
+ * is appended to students.dat.log, and the log is folded into a fresh snapshot in
+ * the background once it grows past a threshold.
+ *
+ * Durability follows a DurabilityPolicy: with GROUP_COMMIT or ASYNC, mutations
+ * return right after the in-memory update and a single flusher thread writes
+ * pending changes per interval or per batch of changes. A shutdown hook flushes
+ * whatever is still pending on normal exit.
+ *
+ * Students are kept in a list for ordering plus an ID -> slot hash index, so
+ * lookups, duplicate checks, updates and deletes are constant-time. A delete
+ * leaves an empty slot behind to keep the order of the others; the list is
+ * compacted once empty slots make up half of it.
+ *
+ * In shared mode (-Dsis.watch=true) several processes can use the same file:
+ * every write holds the FileChannel lock on students.dat.lock, first applies
+ * the journal records other processes appended since this one last read it,
+ * then appends its own. A WatchService watcher does the same catch-up as soon
+ * as the files change, so only the new journal tail is read. A full reload is
+ * only needed after another process rewrote the snapshot, which it signals by
+ * bumping the generation in the lock file.
  */
 public class FileDataHandler extends DataHandler {
     private static final String DATA_FILE = "students.dat";
+    private static final String JOURNAL_SUFFIX = ".log";
+    private static final String ROLLED_JOURNAL_SUFFIX = ".log.1";
+    private static final String LOCK_SUFFIX = ".lock";
+    private static final long COMPACTION_THRESHOLD = 4L * 1024 * 1024; // journal bytes
+    private static final long DEFAULT_FLUSH_INTERVAL_MS = 50;
+    private static final int DEFAULT_FLUSH_BATCH = 1000;
+    private static final int MIN_EMPTY_SLOTS_TO_COMPACT = 1024;
+    public static final String WATCH_PROPERTY = "sis.watch";
+    
+    private final File dataFile;
+    private final File journalFile;
+    private final File rolledJournalFile;
+    private final boolean journaled;
+    private final DurabilityPolicy durability;
+    private final long flushIntervalMs;
+    private final int flushBatch;
     private List<Student> students;
+    private Map<String, Integer> slots;
+    private int emptySlots;
+    private StudentJournal journal;
+    private ExecutorService compactor;
+    private boolean compacting;
+    private final Object snapshotLock = new Object();
+    private long snapshotSequence;
+    private long writtenSequence;
+    private int pendingChanges;
+    private boolean closed;
+    private Thread flusher;
+    private Thread shutdownHook;
+    private StudentFileLock fileLock;
+    private StudentFileWatcher watcher;
+    private long journalPosition;
+    private long generation;
     
     public FileDataHandler() {
+        this(DATA_FILE, true, DurabilityPolicy.configured(), Boolean.getBoolean(WATCH_PROPERTY));
+    }
+    
+    public FileDataHandler(String dataFile, boolean journaled) {
+        this(dataFile, journaled, DurabilityPolicy.SYNC);
+    }
+    
+    public FileDataHandler(String dataFile, boolean journaled, DurabilityPolicy durability) {
+        this(dataFile, journaled, durability, DEFAULT_FLUSH_INTERVAL_MS, DEFAULT_FLUSH_BATCH, false);
+    }
+    
+    /**
+     * @param shared lock writes against other processes and follow their changes (journaled only)
+     */
+    public FileDataHandler(String dataFile, boolean journaled, DurabilityPolicy durability, boolean shared) {
+        this(dataFile, journaled, durability, DEFAULT_FLUSH_INTERVAL_MS, DEFAULT_FLUSH_BATCH, shared);
+    }
+    
+    public FileDataHandler(String dataFile, boolean journaled, DurabilityPolicy durability,
+                           long flushIntervalMs, int flushBatch) {
+        this(dataFile, journaled, durability, flushIntervalMs, flushBatch, false);
+    }
+    
+    /**
+     * @param flushIntervalMs how long the flusher gathers changes before writing them
+     * @param flushBatch      number of pending changes that triggers an early flush
+     * @throws UncheckedIOException if the data file exists but cannot be read
+     */
+    public FileDataHandler(String dataFile, boolean journaled, DurabilityPolicy durability,
+                           long flushIntervalMs, int flushBatch, boolean shared) {
+        this.dataFile = new File(dataFile);
+        this.journalFile = new File(dataFile + JOURNAL_SUFFIX);
+        this.rolledJournalFile = new File(dataFile + ROLLED_JOURNAL_SUFFIX);
+        this.journaled = journaled;
+        this.durability = durability;
+        this.flushIntervalMs = flushIntervalMs;
+        this.flushBatch = flushBatch;
         this.students = new ArrayList<>();
-        loadStudents();
+        this.slots = new HashMap<>();
+        if (shared && journaled) {
+            openLock();
+        }
+        try {
+            loadStudents();
+        } catch (UncheckedIOException e) {
+            // Fail instead of starting empty: the next save would overwrite the file
+            closeLock();
+            throw e;
+        }
+        
+        if (journaled) {
+            openJournal();
+            if (journal != null && rolledJournalFile.exists()) {
+                // Finish the compaction that was interrupted last time
+                saveStudents(liveStudents());
+            }
+        }
+        if (durability != DurabilityPolicy.SYNC) {
+            startFlusher();
+        }
+        if (fileLock != null && journal != null) {
+            startWatcher();
+        }
     }
     
+    private void openLock() {
+        try {
+            fileLock = new StudentFileLock(new File(dataFile.getPath() + LOCK_SUFFIX));
+        } catch (IOException e) {
+            System.err.println("Error opening lock file, not sharing " + dataFile.getName() + ": " + e.getMessage());
+        }
+    }
+    
+    private void closeLock() {
+        try {
+            if (fileLock != null) {
+                fileLock.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing lock file: " + e.getMessage());
+        }
+    }
+    
+    private void startWatcher() {
+        try {
+            watcher = new StudentFileWatcher(dataFile, this::refresh, "", JOURNAL_SUFFIX, LOCK_SUFFIX);
+        } catch (IOException e) {
+            System.err.println("Error watching " + dataFile.getName() + ": " + e.getMessage());
+        }
+    }
+    
+    private void startFlusher() {
+        flusher = new Thread(this::runFlusher, "students-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+        shutdownHook = new Thread(this::close, "students-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+    
+    /**
+     * Wait for changes, gather more for up to the flush interval, then write them as one group
+     */
+    private void runFlusher() {
+        try {
+            while (true) {
+                synchronized (this) {
+                    while (pendingChanges == 0 && !closed) {
+                        wait();
+                    }
+                    if (closed) {
+                        return; // close() writes whatever is left
+                    }
+                    if (pendingChanges < flushBatch) {
+                        wait(flushIntervalMs);
+                    }
+                }
+                writePending(durability == DurabilityPolicy.GROUP_COMMIT);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private void openJournal() {
+        try {
+            journal = new StudentJournal(journalFile);
+            compactor = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "students-compactor");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } catch (IOException e) {
+            System.err.println("Error opening journal, falling back to full saves: " + e.getMessage());
+            journal = null;
+        }
+    }
+    
+    /**
+     * @throws UncheckedIOException if the data file cannot be read; the students
+     *                              loaded before are kept
+     */
     @Override
-    public List<Student> loadStudents() {
-        File file = new File(DATA_FILE);
-        if (!file.exists()) {
-            return new ArrayList<>();
+    public synchronized List<Student> loadStudents() {
+        lockFile();
+        try {
+            if (fileLock != null) {
+                try {
+                    generation = fileLock.readGeneration();
+                } catch (IOException e) {
+                    System.err.println("Error reading lock file: " + e.getMessage());
+                }
+            }
+            reload();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error loading " + dataFile.getName(), e);
+        } finally {
+            unlockFile();
         }
-        
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
-            @SuppressWarnings("unchecked")
-            List<Student> loadedStudents = (List<Student>) ois.readObject();
-            students = loadedStudents;
-            return students;
-        } catch (IOException | ClassNotFoundException e) {
-            System.err.println("Error loading students: " + e.getMessage());
-            return new ArrayList<>();
+        recordReloaded();
+        publishChanges();
+        return liveStudents();
+    }
+    
+    private void reload() throws IOException {
+        students = readSnapshot();
+        rebuildIndex();
+        if (journaled) {
+            // A rolled journal only survives if a compaction was interrupted
+            replayJournal(rolledJournalFile, 0);
+            journalPosition = replayJournal(journalFile, 0);
+        }
+    }
+    
+    private List<Student> readSnapshot() throws IOException {
+        StudentFileFormat.migrateLegacy(dataFile);
+        return StudentFileFormat.read(dataFile);
+    }
+    
+    /**
+     * Apply the journal records from the given position on
+     *
+     * @return position just past the last record applied
+     */
+    private long replayJournal(File file, long from) {
+        try {
+            return StudentJournal.replay(file, from, entry -> {
+                if (entry.op == StudentJournal.Op.DELETE) {
+                    removeSlot(entry.id);
+                } else {
+                    Integer slot = slots.get(entry.id);
+                    if (slot != null) {
+                        replaceSlot(slot, entry.student);
+                    } else {
+                        appendSlot(entry.student);
+                    }
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("Error replaying journal " + file.getName() + ": " + e.getMessage());
+            return file.length();
+        }
+    }
+    
+    /**
+     * Pick up changes another process made to the data file or its journal
+     */
+    private void refresh() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            lockShared();
+            unlockShared();
+        }
+        publishChanges();
+    }
+    
+    /**
+     * Take the cross-process lock and apply what other processes wrote since this one last looked
+     */
+    private void lockShared() {
+        if (fileLock == null) {
+            return;
+        }
+        lockFile();
+        try {
+            long current = fileLock.readGeneration();
+            long length = journalFile.length();
+            if (current != generation || length < journalPosition) {
+                // The snapshot was rewritten, so the journal position no longer applies
+                reload();
+                generation = current; // only once read, so a failed reload is retried
+                recordReloaded();
+            } else if (length > journalPosition) {
+                journalPosition = replayJournal(journalFile, journalPosition);
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading " + dataFile.getName() + ": " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Make this process's journal records visible to the others, compact if due, and release the lock
+     */
+    private void unlockShared() {
+        if (fileLock == null) {
+            return;
+        }
+        try {
+            if (journal != null) {
+                journal.flush();
+                journalPosition = journalFile.length();
+                if (journalPosition >= COMPACTION_THRESHOLD) {
+                    compactShared();
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error writing journal: " + e.getMessage());
+        } finally {
+            unlockFile();
+        }
+    }
+    
+    /**
+     * Compaction while other processes share the file: done in place under the lock,
+     * since they keep appending to the journal file and cannot follow a rotation
+     * The generation is bumped first so a crash part-way still forces a full reload elsewhere
+     */
+    private void compactShared() throws IOException {
+        generation = fileLock.nextGeneration();
+        writeSnapshot(liveStudents(), ++snapshotSequence, true);
+        journal.truncate();
+        journalPosition = 0;
+    }
+    
+    private void lockFile() {
+        if (fileLock != null) {
+            try {
+                fileLock.lock();
+            } catch (IOException e) {
+                System.err.println("Error locking " + dataFile.getName() + ": " + e.getMessage());
+            }
+        }
+    }
+    
+    private void unlockFile() {
+        if (fileLock != null) {
+            try {
+                fileLock.unlock();
+            } catch (IOException e) {
+                System.err.println("Error unlocking " + dataFile.getName() + ": " + e.getMessage());
+            }
         }
     }
     
     @Override
-    public void saveStudents(List<Student> students) {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(DATA_FILE))) {
-            oos.writeObject(students);
-            this.students = students;
+    public synchronized void saveStudents(List<Student> students) {
+        // Keep copies, the caller's list may be unmodifiable and its students may change later
+        List<Student> saved = new ArrayList<>(students.size());
+        for (Student student : students) {
+            saved.add(new Student(student));
+        }
+        lockFile();
+        try {
+            if (fileLock != null) {
+                generation = fileLock.nextGeneration();
+            }
+            writeSnapshot(saved, ++snapshotSequence, true);
+            pendingChanges = 0;
+            if (journal != null) {
+                journal.truncate();
+                Files.deleteIfExists(rolledJournalFile.toPath());
+                journalPosition = 0;
+            }
+            this.students = saved;
+            rebuildIndex();
+            recordReloaded();
+            publishChanges();
         } catch (IOException e) {
             System.err.println("Error saving students: " + e.getMessage());
+        } finally {
+            unlockFile();
+        }
+    }
+    
+    /**
+     * Write a snapshot to a temporary file and atomically swap it in,
+     * so a crash never leaves a half-written students.dat behind
+     * Snapshots older than the last one written are skipped
+     *
+     * @param force sync the file and its directory entry; required before the journal is dropped
+     */
+    private void writeSnapshot(List<Student> snapshot, long sequence, boolean force) throws IOException {
+        synchronized (snapshotLock) {
+            if (sequence < writtenSequence) {
+                return;
+            }
+            StudentFileFormat.write(dataFile, snapshot, StudentFileFormat.configured(), force);
+            writtenSequence = sequence;
         }
     }
     
     @Override
-    public boolean addStudent(Student student) {
-        if (findStudentById(student.getId()) != null) {
-            return false; // Student with this ID already exists
+    public synchronized boolean addStudent(Student student) {
+        lockShared();
+        try {
+            if (slots.containsKey(student.getId())) {
+                return false; // Student with this ID already exists
+            }
+            appendSlot(new Student(student));
+            persistPut(student);
+            return true;
+        } finally {
+            unlockShared();
+            publishChanges();
         }
-        students.add(student);
-        saveStudents(students);
-        return true;
     }
     
     @Override
-    public boolean updateStudent(Student student) {
-        for (int i = 0; i < students.size(); i++) {
-            if (students.get(i).getId().equals(student.getId())) {
-                students.set(i, student);
-                saveStudents(students);
-                return true;
+    public synchronized boolean updateStudent(Student student) {
+        lockShared();
+        try {
+            Integer slot = slots.get(student.getId());
+            if (slot == null) {
+                return false;
             }
+            replaceSlot(slot, new Student(student));
+            persistPut(student);
+            return true;
+        } finally {
+            unlockShared();
+            publishChanges();
         }
-        return false;
     }
     
     @Override
-    public boolean deleteStudent(String id) {
-        Student student = findStudentById(id);
-        if (student != null) {
-            students.remove(student);
-            saveStudents(students);
+    public synchronized boolean deleteStudent(String id) {
+        lockShared();
+        try {
+            if (removeSlot(id) == null) {
+                return false;
+            }
+            persistDelete(id);
             return true;
+        } finally {
+            unlockShared();
+            publishChanges();
         }
-        return false;
     }
     
     @Override
-    public Student findStudentById(String id) {
-        for (Student student : students) {
-            if (student.getId().equals(id)) {
-                return student;
+    public synchronized Student findStudentById(String id) {
+        Integer slot = slots.get(id);
+        return slot != null ? new Student(students.get(slot)) : null;
+    }
+    
+    /**
+     * Slots are in snapshot order, so sorting the slots of the IDs gives that order
+     */
+    @Override
+    public synchronized List<Student> findStudentsByIds(Collection<String> ids) {
+        int[] found = new int[ids.size()];
+        int count = 0;
+        for (String id : ids) {
+            Integer slot = slots.get(id);
+            if (slot != null) {
+                found[count++] = slot;
+            }
+        }
+        Arrays.sort(found, 0, count);
+        List<Student> matches = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || found[i] != found[i - 1]) {
+                matches.add(new Student(students.get(found[i])));
             }
         }
-        return null;
+        return matches;
     }
     
+    /**
+     * All students as the shared snapshot list; it is only copied after a change
+     */
     @Override
     public List<Student> getAllStudents() {
-        return new ArrayList<>(students);
+        return getSnapshot().getStudents();
+    }
+    
+    @Override
+    public synchronized StudentSnapshot getSnapshot() {
+        return super.getSnapshot();
+    }
+    
+    @Override
+    protected List<Student> readAllStudents() {
+        return emptySlots == 0 ? students : liveStudents();
+    }
+    
+    /**
+     * Apply a batch in memory and persist it with a single journal write or save
+     */
+    @Override
+    public synchronized BatchResult addStudents(Collection<Student> batch) {
+        BatchResult result = new BatchResult(batch.size());
+        List<Student> inserted = new ArrayList<>();
+        int row = 0;
+        lockShared();
+        try {
+            for (Student student : batch) {
+                if (student == null || student.getId() == null) {
+                    result.fail(row++, "Missing student ID");
+                } else if (slots.containsKey(student.getId())) {
+                    result.record(row++, BatchResult.Outcome.DUPLICATE);
+                } else {
+                    appendSlot(new Student(student));
+                    inserted.add(student);
+                    result.record(row++, BatchResult.Outcome.INSERTED);
+                }
+            }
+            persistPuts(inserted);
+        } finally {
+            unlockShared();
+        }
+        publishChanges();
+        return result;
+    }
+    
+    @Override
+    public synchronized BatchResult upsertStudents(Collection<Student> batch) {
+        BatchResult result = new BatchResult(batch.size());
+        List<Student> changed = new ArrayList<>();
+        int row = 0;
+        lockShared();
+        try {
+            for (Student student : batch) {
+                if (student == null || student.getId() == null) {
+                    result.fail(row++, "Missing student ID");
+                    continue;
+                }
+                Integer slot = slots.get(student.getId());
+                if (slot != null) {
+                    replaceSlot(slot, new Student(student));
+                    result.record(row++, BatchResult.Outcome.UPDATED);
+                } else {
+                    appendSlot(new Student(student));
+                    result.record(row++, BatchResult.Outcome.INSERTED);
+                }
+                changed.add(student);
+            }
+            persistPuts(changed);
+        } finally {
+            unlockShared();
+        }
+        publishChanges();
+        return result;
+    }
+    
+    /**
+     * Write all pending changes and force them to disk
+     */
+    @Override
+    public void flush() {
+        writePending(true);
+    }
+    
+    /**
+     * Stop the flusher, write pending changes and close the journal
+     */
+    @Override
+    public void close() {
+        Thread flusherThread;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+            flusherThread = flusher;
+        }
+        if (flusherThread != null) {
+            try {
+                flusherThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (watcher != null) {
+            try {
+                watcher.close();
+            } catch (IOException e) {
+                System.err.println("Error stopping watcher: " + e.getMessage());
+            }
+        }
+        writePending(true);
+        if (compactor != null) {
+            compactor.shutdown();
+        }
+        try {
+            if (journal != null) {
+                journal.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing journal: " + e.getMessage());
+        }
+        try {
+            if (fileLock != null) {
+                fileLock.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing lock file: " + e.getMessage());
+        }
+        if (shutdownHook != null && Thread.currentThread() != shutdownHook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // Already shutting down
+            }
+        }
+    }
+    
+    /**
+     * Write changes recorded since the last flush
+     * Journal records are flushed (and optionally forced); without a journal the
+     * current list is written as a snapshot outside the handler lock
+     */
+    private void writePending(boolean force) {
+        List<Student> snapshot = null;
+        long sequence = 0;
+        synchronized (this) {
+            if (pendingChanges == 0) {
+                return;
+            }
+            pendingChanges = 0;
+            if (journal == null) {
+                snapshot = liveStudents();
+                sequence = ++snapshotSequence;
+            }
+        }
+        
+        try {
+            if (snapshot != null) {
+                writeSnapshot(snapshot, sequence, force);
+            } else if (force) {
+                journal.sync();
+            } else {
+                journal.flush();
+            }
+        } catch (IOException e) {
+            System.err.println("Error writing pending changes: " + e.getMessage());
+        }
+    }
+    
+    private void persistPut(Student student) {
+        persistPuts(Collections.singletonList(student));
+    }
+    
+    private void persistPuts(List<Student> changed) {
+        if (changed.isEmpty()) {
+            return;
+        }
+        if (journal != null) {
+            try {
+                for (Student student : changed) {
+                    journal.appendPut(student);
+                }
+            } catch (IOException e) {
+                System.err.println("Error writing journal: " + e.getMessage());
+            }
+        }
+        changed(changed.size());
+    }
+    
+    private void persistDelete(String id) {
+        if (journal != null) {
+            try {
+                journal.appendDelete(id);
+            } catch (IOException e) {
+                System.err.println("Error writing journal: " + e.getMessage());
+            }
+        }
+        changed(1);
+    }
+    
+    /**
+     * Write through immediately under SYNC, otherwise leave the changes to the flusher
+     */
+    private void changed(int count) {
+        pendingChanges += count;
+        if (durability == DurabilityPolicy.SYNC || closed) {
+            writePending(true);
+        } else if (pendingChanges == count || pendingChanges >= flushBatch) {
+            notifyAll(); // wake the flusher for a new group or a full batch
+        }
+        if (journal != null && fileLock == null) {
+            compactIfNeeded();
+        }
+    }
+    
+    /**
+     * Fold the journal into a fresh snapshot once it passes the size threshold
+     * The live journal is rotated first so mutations are never blocked by the rewrite
+     */
+    private void compactIfNeeded() {
+        if (compacting || journal.size() < COMPACTION_THRESHOLD || rolledJournalFile.exists()) {
+            return;
+        }
+        
+        List<Student> snapshot = liveStudents();
+        long sequence = ++snapshotSequence;
+        try {
+            journal.rotate(rolledJournalFile);
+        } catch (IOException e) {
+            System.err.println("Error rotating journal: " + e.getMessage());
+            return;
+        }
+        
+        compacting = true;
+        compactor.submit(() -> {
+            try {
+                writeSnapshot(snapshot, sequence, true);
+                Files.deleteIfExists(rolledJournalFile.toPath());
+            } catch (IOException e) {
+                System.err.println("Error compacting journal: " + e.getMessage());
+            } finally {
+                synchronized (FileDataHandler.this) {
+                    compacting = false;
+                }
+            }
+        });
+    }
+    
+    private void rebuildIndex() {
+        slots = new HashMap<>(Math.max(16, students.size() * 4 / 3 + 1));
+        emptySlots = 0;
+        for (int i = 0; i < students.size(); i++) {
+            if (students.get(i) != null) {
+                slots.put(students.get(i).getId(), i);
+            } else {
+                emptySlots++;
+            }
+        }
+    }
+    
+    /**
+     * Copy of the students in order, without the slots freed by deletes
+     */
+    private List<Student> liveStudents() {
+        List<Student> live = new ArrayList<>(students.size() - emptySlots);
+        for (Student student : students) {
+            if (student != null) {
+                live.add(student);
+            }
+        }
+        return live;
+    }
+    
+    private void appendSlot(Student student) {
+        slots.put(student.getId(), students.size());
+        students.add(student);
+        recordInserted(student);
+    }
+    
+    private void replaceSlot(int slot, Student student) {
+        Student old = students.set(slot, student);
+        recordUpdated(old, student);
+    }
+    
+    /**
+     * Remove a student by emptying its slot, so the others keep their order
+     * The list is compacted (in O(n), amortized O(1) per delete) once half of it is empty
+     */
+    private Student removeSlot(String id) {
+        Integer slot = slots.remove(id);
+        if (slot == null) {
+            return null;
+        }
+        Student removed = students.set(slot, null);
+        emptySlots++;
+        if (emptySlots >= MIN_EMPTY_SLOTS_TO_COMPACT && emptySlots * 2 >= students.size()) {
+            students = liveStudents();
+            rebuildIndex();
+        }
+        recordDeleted(removed);
+        return removed;
     }
 }
-
@@ -0,0 +1,249 @@
+package data;
+
+import model.Student;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Predicate;
+
+/**
+ * DataHandler decorator that maintains a persistent B+tree over student IDs
+ *
+ * The tree follows the change events of the wrapped handler, so ID-ordered listings and ID range queries walk the tree's leaves and
+ * fetch only the students they return instead of sorting the whole data set.
+ * On open the tree is checked against the stored IDs and rebuilt if it is
+ * missing or out of date (for example after a crash or a run without it).
+ * Change events of the wrapped handler are republished as this handler's;
+ * events it publishes on its own (e.g. a shared FileDataHandler picking up
+ * another process's changes) are applied by a relay thread.
+ */
+public class IdIndexedDataHandler extends DataHandler {
+    private static final String INDEX_FILE = "students.idx";
+    
+    private final DataHandler delegate;
+    private final BPlusTreeIndex index;
+    private final List<StudentChangeEvent> relayed = new ArrayList<>();
+    private ExecutorService relayExecutor;
+    
+    public IdIndexedDataHandler(DataHandler delegate) {
+        this(delegate, INDEX_FILE);
+    }
+    
+    public IdIndexedDataHandler(DataHandler delegate, String indexFile) {
+        this.delegate = delegate;
+        try {
+            index = new BPlusTreeIndex(new File(indexFile));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error opening index file " + indexFile, e);
+        }
+        List<String> ids = delegate.readStudentIds();
+        if (!index.matches(ids)) {
+            index.bulkLoad(ids);
+        }
+        delegate.addChangeListener(events -> {
+            synchronized (relayed) {
+                relayed.addAll(events);
+            }
+            if (!Thread.holdsLock(this)) {
+                relayLater();
+            }
+        });
+    }
+    
+    /**
+     * Apply events published outside a write of this handler on the relay thread,
+     * since the publishing thread may hold locks a writer here is waiting for
+     */
+    private void relayLater() {
+        synchronized (relayed) {
+            if (relayExecutor == null) {
+                relayExecutor = Executors.newSingleThreadExecutor(r -> {
+                    Thread thread = new Thread(r, "students-index-relay");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            relayExecutor.execute(() -> {
+                synchronized (IdIndexedDataHandler.this) {
+                    changed();
+                }
+            });
+        }
+    }
+    
+    /**
+     * Mirror the events of the wrapped handler into the tree, bump the version and republish them
+     */
+    private void changed() {
+        List<StudentChangeEvent> events;
+        synchronized (relayed) {
+            if (relayed.isEmpty()) {
+                return;
+            }
+            events = new ArrayList<>(relayed);
+            relayed.clear();
+        }
+        boolean reloaded = false;
+        for (StudentChangeEvent event : events) {
+            if (event.getType() == StudentChangeEvent.Type.RELOADED) {
+                reloaded = true;
+                break;
+            }
+        }
+        if (reloaded) {
+            index.bulkLoad(delegate.readStudentIds());
+        } else {
+            for (StudentChangeEvent event : events) {
+                if (event.getType() == StudentChangeEvent.Type.INSERTED) {
+                    index.insert(event.getId());
+                } else if (event.getType() == StudentChangeEvent.Type.DELETED) {
+                    index.delete(event.getId());
+                } // an update keeps the ID, the tree is unchanged
+            }
+        }
+        relayChanges(events);
+        markChanged();
+        publishChanges();
+    }
+    
+    @Override
+    public synchronized List<Student> loadStudents() {
+        List<Student> students = delegate.loadStudents();
+        changed();
+        return students;
+    }
+    
+    @Override
+    public synchronized void saveStudents(List<Student> students) {
+        delegate.saveStudents(students);
+        changed();
+    }
+    
+    @Override
+    public synchronized boolean addStudent(Student student) {
+        boolean added = delegate.addStudent(student);
+        changed();
+        return added;
+    }
+    
+    @Override
+    public synchronized boolean updateStudent(Student student) {
+        boolean updated = delegate.updateStudent(student);
+        changed();
+        return updated;
+    }
+    
+    @Override
+    public synchronized boolean deleteStudent(String id) {
+        boolean deleted = delegate.deleteStudent(id);
+        changed();
+        return deleted;
+    }
+    
+    @Override
+    public synchronized BatchResult addStudents(Collection<Student> students) {
+        BatchResult result = delegate.addStudents(students);
+        changed();
+        return result;
+    }
+    
+    @Override
+    public synchronized BatchResult upsertStudents(Collection<Student> students) {
+        BatchResult result = delegate.upsertStudents(students);
+        changed();
+        return result;
+    }
+    
+    @Override
+    public Student findStudentById(String id) {
+        return delegate.findStudentById(id);
+    }
+    
+    @Override
+    public List<Student> getAllStudents() {
+        return delegate.getAllStudents();
+    }
+    
+    @Override
+    public synchronized StudentSnapshot getSnapshot() {
+        return super.getSnapshot();
+    }
+    
+    @Override
+    public StudentColumns getColumns() {
+        return delegate.getColumns();
+    }
+    
+    @Override
+    public List<Student> search(Predicate<Student> predicate) {
+        return delegate.search(predicate);
+    }
+    
+    @Override
+    public List<Student> findStudentsByIds(Collection<String> ids) {
+        return delegate.findStudentsByIds(ids);
+    }
+    
+    /**
+     * Walk the tree from the lower bound and look up only the matching students
+     */
+    @Override
+    public synchronized List<Student> findStudentsByIdRange(String fromId, String toId) {
+        return resolve(index.range(fromId, toId, Integer.MAX_VALUE));
+    }
+    
+    @Override
+    public synchronized List<Student> getStudentsInIdOrder(String afterId, int limit) {
+        List<String> ids = new ArrayList<>();
+        if (limit > 0) {
+            index.scan(afterId, id -> {
+                if (!id.equals(afterId)) {
+                    ids.add(id);
+                }
+                return ids.size() < limit;
+            });
+        }
+        return resolve(ids);
+    }
+    
+    private List<Student> resolve(List<String> ids) {
+        List<Student> students = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Student student = delegate.findStudentById(id);
+            if (student != null) {
+                students.add(student);
+            }
+        }
+        return students;
+    }
+    
+    @Override
+    public void flush() {
+        delegate.flush();
+        try {
+            index.flush();
+        } catch (IOException e) {
+            System.err.println("Error flushing index: " + e.getMessage());
+        }
+    }
+    
+    @Override
+    public synchronized void close() {
+        synchronized (relayed) {
+            if (relayExecutor != null) {
+                relayExecutor.shutdown();
+            }
+        }
+        delegate.close();
+        try {
+            index.close();
+        } catch (IOException e) {
+            System.err.println("Error closing index: " + e.getMessage());
+        }
+    }
+}
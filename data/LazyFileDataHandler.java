@@ -0,0 +1,595 @@
+package data;
+
+import model.Student;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Index-first data handler for large student files
+ *
+ * Construction does no I/O on students.dat: a background thread scans the
+ * binary file once to build a compact ID -> file offset index (StudentOffsetTable),
+ * decoding only the ID of each record. Student objects are materialized on
+ * demand when they are looked up, and an optional warm-up thread loads the rest
+ * afterwards. Calls that need the index wait for it, so the GUI can appear
+ * immediately; if the data file cannot be indexed they fail instead of
+ * working on an empty index that a later compaction would write back.
+ *
+ * Changes are appended to the same journal as FileDataHandler and replayed on
+ * top of the index; the journal is folded into a new data file once it grows
+ * past a threshold. Whenever the data file is rewritten its year and course
+ * columns are written next to it, so statistics can be served from those
+ * without materializing any student until the data changes.
+ */
+public class LazyFileDataHandler extends DataHandler {
+    private static final String DATA_FILE = "students.dat";
+    private static final String JOURNAL_SUFFIX = ".log";
+    private static final long COMPACTION_THRESHOLD = 4L * 1024 * 1024; // journal bytes
+    private static final int HEADER_SIZE = 9; // magic, version, record count; then the course dictionary
+    private static final long NOT_IN_FILE = -1;
+    private static final int WARM_UP_CHUNK = 1000;
+    
+    private final File dataFile;
+    private final File journalFile;
+    private final boolean warmUp;
+    private StudentOffsetTable offsets = new StudentOffsetTable(0); // insertion order = display order
+    private final StudentJournal journal;
+    private FileChannel channel;
+    private String[] courses; // dictionary of the data file, null for version 1 files
+    private boolean ready;
+    private IOException indexFailure;
+    private boolean columnsFresh; // column files match the data file and nothing changed since
+    
+    public LazyFileDataHandler() {
+        this(DATA_FILE, true);
+    }
+    
+    /**
+     * @param warmUp materialize all students in the background once the index is built
+     */
+    public LazyFileDataHandler(String dataFile, boolean warmUp) {
+        this.dataFile = new File(dataFile);
+        this.journalFile = new File(dataFile + JOURNAL_SUFFIX);
+        this.warmUp = warmUp;
+        try {
+            journal = new StudentJournal(journalFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error opening journal " + journalFile, e);
+        }
+        
+        Thread indexer = new Thread(this::buildIndex, "students-indexer");
+        indexer.setDaemon(true);
+        indexer.start();
+    }
+    
+    /**
+     * Scan record boundaries, then replay the journal and publish the index
+     */
+    private void buildIndex() {
+        StudentOffsetTable index = new StudentOffsetTable(0);
+        IOException failure = null;
+        try {
+            StudentFileFormat.migrateLegacy(dataFile);
+            StudentFileFormat format = StudentFileFormat.detect(dataFile);
+            if (format == StudentFileFormat.BINARY) {
+                index = scanOffsets();
+                channel = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ);
+            } else if (format == StudentFileFormat.COMPRESSED) {
+                // Blocks cannot be read record by record, so everything is loaded up front
+                for (Student student : StudentFileFormat.read(dataFile)) {
+                    index.setStudent(index.put(student.getId(), NOT_IN_FILE), student);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error indexing students: " + e.getMessage());
+            failure = e;
+        }
+        
+        synchronized (this) {
+            if (failure != null) {
+                indexFailure = failure;
+                ready = true;
+                notifyAll();
+                return;
+            }
+            offsets = index;
+            columnsFresh = channel != null;
+            try {
+                StudentJournal.replay(journalFile, entry -> {
+                    if (entry.op == StudentJournal.Op.DELETE) {
+                        remove(entry.id);
+                    } else {
+                        put(entry.student);
+                    }
+                });
+            } catch (IOException e) {
+                System.err.println("Error replaying journal: " + e.getMessage());
+            }
+            ready = true;
+            recordReloaded();
+            publishChanges();
+            notifyAll();
+        }
+        
+        if (warmUp) {
+            warmUp();
+        }
+    }
+    
+    private StudentOffsetTable scanOffsets() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(dataFile), 64 * 1024))) {
+            in.readInt(); // magic
+            int version = in.readUnsignedByte();
+            int count = in.readInt();
+            StudentOffsetTable index = new StudentOffsetTable(count);
+            long position = HEADER_SIZE;
+            courses = null;
+            if (version >= 2) {
+                int size = StudentRecordReader.readVarInt(in);
+                position += varIntSize(size);
+                courses = new String[size];
+                for (int i = 0; i < size; i++) {
+                    int length = StudentRecordReader.readVarInt(in);
+                    byte[] bytes = new byte[Math.max(0, length - 1)];
+                    in.readFully(bytes);
+                    courses[i] = length == 0 ? null : StringDictionary.COURSES.intern(new String(bytes, StandardCharsets.UTF_8));
+                    position += varIntSize(length) + bytes.length;
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                long start = position;
+                int idLength = StudentRecordReader.readVarInt(in);
+                position += varIntSize(idLength);
+                String id = null;
+                if (idLength > 0) {
+                    byte[] bytes = new byte[idLength - 1];
+                    in.readFully(bytes);
+                    id = new String(bytes, StandardCharsets.UTF_8);
+                    position += bytes.length;
+                }
+                position += skipString(in); // name
+                position += courses == null ? skipString(in) : skipCourse(in);
+                int year = StudentRecordReader.readVarInt(in);
+                position += varIntSize(year);
+                position += skipString(in) + skipString(in); // email, phone
+                index.put(id, start);
+            }
+            return index;
+        }
+    }
+    
+    private static long skipString(DataInputStream in) throws IOException {
+        int length = StudentRecordReader.readVarInt(in);
+        int bytes = Math.max(0, length - 1);
+        skipFully(in, bytes);
+        return varIntSize(length) + bytes;
+    }
+    
+    private static long skipCourse(DataInputStream in) throws IOException {
+        int tag = StudentRecordReader.readVarInt(in);
+        int bytes = (tag & 1) == 0 && tag != 0 ? (tag >>> 1) - 1 : 0; // only inline courses have bytes
+        skipFully(in, bytes);
+        return varIntSize(tag) + bytes;
+    }
+    
+    private static void skipFully(DataInputStream in, int bytes) throws IOException {
+        int remaining = bytes;
+        while (remaining > 0) {
+            int skipped = in.skipBytes(remaining);
+            if (skipped <= 0) {
+                throw new EOFException("Truncated student record");
+            }
+            remaining -= skipped;
+        }
+    }
+    
+    private static int varIntSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+    
+    /**
+     * Stream the data file and materialize the remaining students a chunk at a time,
+     * so callers are never blocked for long
+     */
+    private void warmUp() {
+        if (channel == null) {
+            return;
+        }
+        try (StudentRecordReader reader = new StudentRecordReader(new FileInputStream(dataFile))) {
+            List<Student> chunk = new ArrayList<>(WARM_UP_CHUNK);
+            while (reader.hasNext()) {
+                chunk.add(reader.next());
+                if (chunk.size() == WARM_UP_CHUNK || !reader.hasNext()) {
+                    synchronized (this) {
+                        for (Student student : chunk) {
+                            materialize(student);
+                        }
+                    }
+                    chunk.clear();
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error warming up students: " + e.getMessage());
+        }
+    }
+    
+    private synchronized void awaitIndex() {
+        while (!ready) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        if (indexFailure != null) {
+            throw new UncheckedIOException("Error indexing " + dataFile.getName(), indexFailure);
+        }
+    }
+    
+    /**
+     * True once the ID index has been built
+     */
+    public synchronized boolean isReady() {
+        return ready;
+    }
+    
+    @Override
+    public synchronized List<Student> loadStudents() {
+        awaitIndex();
+        return new ArrayList<>(getSnapshot().getStudents());
+    }
+    
+    @Override
+    public synchronized void saveStudents(List<Student> students) {
+        awaitIndex();
+        rewrite(students);
+        recordReloaded();
+        publishChanges();
+    }
+    
+    /**
+     * Write a new data file holding exactly these students and empty the journal
+     */
+    private void rewrite(List<Student> students) {
+        try {
+            StudentFileFormat.write(dataFile, students, StudentFileFormat.BINARY); // offsets need the plain format
+            journal.truncate();
+            StudentColumns.of(getVersion(), students).write(dataFile);
+            columnsFresh = true;
+            reopenChannel();
+            offsets = new StudentOffsetTable(students.size());
+            for (Student student : students) {
+                offsets.setStudent(offsets.put(student.getId(), NOT_IN_FILE), new Student(student));
+            }
+        } catch (IOException e) {
+            System.err.println("Error saving students: " + e.getMessage());
+        }
+    }
+    
+    @Override
+    public synchronized boolean addStudent(Student student) {
+        awaitIndex();
+        if (offsets.contains(student.getId())) {
+            return false; // Student with this ID already exists
+        }
+        put(new Student(student));
+        journalPut(student);
+        publishChanges();
+        return true;
+    }
+    
+    @Override
+    public synchronized boolean updateStudent(Student student) {
+        awaitIndex();
+        if (!offsets.contains(student.getId())) {
+            return false;
+        }
+        put(new Student(student));
+        journalPut(student);
+        publishChanges();
+        return true;
+    }
+    
+    /**
+     * Journal the whole batch with one flush and publish its events together
+     */
+    @Override
+    public synchronized BatchResult addStudents(Collection<Student> students) {
+        return applyBatch(students, false);
+    }
+    
+    @Override
+    public synchronized BatchResult upsertStudents(Collection<Student> students) {
+        return applyBatch(students, true);
+    }
+    
+    private BatchResult applyBatch(Collection<Student> students, boolean upsert) {
+        awaitIndex();
+        BatchResult result = new BatchResult(students.size());
+        int row = 0;
+        try {
+            for (Student student : students) {
+                if (student == null || student.getId() == null) {
+                    result.fail(row++, "Missing student ID");
+                    continue;
+                }
+                boolean exists = offsets.contains(student.getId());
+                if (exists && !upsert) {
+                    result.record(row++, BatchResult.Outcome.DUPLICATE);
+                    continue;
+                }
+                put(new Student(student));
+                journal.appendPut(student);
+                result.record(row++, exists ? BatchResult.Outcome.UPDATED : BatchResult.Outcome.INSERTED);
+            }
+            journal.flush();
+        } catch (IOException e) {
+            System.err.println("Error writing journal: " + e.getMessage());
+        }
+        compactIfNeeded();
+        publishChanges();
+        return result;
+    }
+    
+    @Override
+    public synchronized boolean deleteStudent(String id) {
+        awaitIndex();
+        if (!offsets.contains(id)) {
+            return false;
+        }
+        remove(id);
+        try {
+            journal.appendDelete(id);
+            journal.flush();
+        } catch (IOException e) {
+            System.err.println("Error writing journal: " + e.getMessage());
+        }
+        compactIfNeeded();
+        publishChanges();
+        return true;
+    }
+    
+    @Override
+    public synchronized Student findStudentById(String id) {
+        awaitIndex();
+        int row = offsets.find(id);
+        Student student = row == StudentOffsetTable.NOT_FOUND ? null : resolve(row);
+        return student != null ? new Student(student) : null;
+    }
+    
+    /**
+     * Index rows are in snapshot order, so sorting the rows of the IDs gives that order
+     */
+    @Override
+    public synchronized List<Student> findStudentsByIds(Collection<String> ids) {
+        awaitIndex();
+        int[] found = new int[ids.size()];
+        int count = 0;
+        for (String id : ids) {
+            int row = offsets.find(id);
+            if (row != StudentOffsetTable.NOT_FOUND) {
+                found[count++] = row;
+            }
+        }
+        Arrays.sort(found, 0, count);
+        List<Student> matches = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || found[i] != found[i - 1]) {
+                matches.add(new Student(resolve(found[i])));
+            }
+        }
+        return matches;
+    }
+    
+    @Override
+    public List<Student> getAllStudents() {
+        return getSnapshot().getStudents();
+    }
+    
+    @Override
+    public synchronized StudentSnapshot getSnapshot() {
+        awaitIndex();
+        return super.getSnapshot();
+    }
+    
+    @Override
+    public synchronized StudentColumns getColumns() {
+        awaitIndex();
+        return super.getColumns();
+    }
+    
+    /**
+     * Use the persisted columns while they still describe the data
+     */
+    @Override
+    protected StudentColumns readColumns(long version) {
+        if (columnsFresh) {
+            StudentColumns columns = StudentColumns.read(dataFile, version);
+            if (columns != null && columns.size() == offsets.size()) {
+                return columns;
+            }
+            columnsFresh = false;
+        }
+        return super.readColumns(version);
+    }
+    
+    @Override
+    protected List<Student> readAllStudents() {
+        if (offsets.loadedCount() < offsets.size()) {
+            materializeAll();
+        }
+        List<Student> students = new ArrayList<>(offsets.size());
+        for (int row = 0; row < offsets.rowCount(); row++) {
+            if (offsets.id(row) != null) {
+                students.add(resolve(row));
+            }
+        }
+        return students;
+    }
+    
+    /**
+     * IDs straight from the index, without materializing any student
+     */
+    @Override
+    protected synchronized List<String> readStudentIds() {
+        awaitIndex();
+        List<String> ids = new ArrayList<>(offsets.size());
+        for (int row = 0; row < offsets.rowCount(); row++) {
+            if (offsets.id(row) != null) {
+                ids.add(offsets.id(row));
+            }
+        }
+        return ids;
+    }
+    
+    @Override
+    public synchronized void close() {
+        while (!ready) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        try {
+            journal.close();
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing student files: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Events recorded before the index is ready are superseded by its reload event,
+     * so old values are only looked up afterwards
+     */
+    private void put(Student student) {
+        int row = offsets.find(student.getId());
+        boolean exists = row != StudentOffsetTable.NOT_FOUND;
+        Student old = exists && ready && hasChangeListeners() ? resolve(row) : null;
+        if (!exists) {
+            row = offsets.put(student.getId(), NOT_IN_FILE);
+        }
+        offsets.setStudent(row, student);
+        columnsFresh = false;
+        if (exists) {
+            recordUpdated(old, student);
+        } else {
+            recordInserted(student);
+        }
+    }
+    
+    private void remove(String id) {
+        int row = offsets.find(id);
+        if (row == StudentOffsetTable.NOT_FOUND) {
+            return;
+        }
+        Student old = ready && hasChangeListeners() ? resolve(row) : null;
+        offsets.remove(id);
+        columnsFresh = false;
+        recordDeleted(old);
+    }
+    
+    private void journalPut(Student student) {
+        try {
+            journal.appendPut(student);
+            journal.flush();
+        } catch (IOException e) {
+            System.err.println("Error writing journal: " + e.getMessage());
+        }
+        compactIfNeeded();
+    }
+    
+    /**
+     * Rewrite the data file once the journal passes the threshold
+     * All students are materialized first since their file offsets change
+     */
+    private void compactIfNeeded() {
+        if (journal.size() >= COMPACTION_THRESHOLD) {
+            rewrite(readAllStudents());
+        }
+    }
+    
+    /**
+     * Read the whole data file sequentially instead of seeking record by record
+     */
+    private void materializeAll() {
+        if (channel == null) {
+            return;
+        }
+        try (StudentRecordReader reader = new StudentRecordReader(new FileInputStream(dataFile))) {
+            while (reader.hasNext()) {
+                materialize(reader.next());
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading students: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Keep a student read from the data file unless the index has moved on from that record
+     */
+    private void materialize(Student student) {
+        int row = offsets.find(student.getId());
+        if (row != StudentOffsetTable.NOT_FOUND && offsets.offset(row) != NOT_IN_FILE
+                && offsets.student(row) == null) {
+            offsets.setStudent(row, student);
+        }
+    }
+    
+    /**
+     * Return the materialized student of a row, reading it from the data file if needed
+     */
+    private Student resolve(int row) {
+        Student student = offsets.student(row);
+        if (student == null) {
+            try {
+                student = readAt(offsets.offset(row));
+                offsets.setStudent(row, student);
+            } catch (IOException e) {
+                System.err.println("Error reading student " + offsets.id(row) + ": " + e.getMessage());
+            }
+        }
+        return student;
+    }
+    
+    private Student readAt(long offset) throws IOException {
+        int size = 512;
+        while (true) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(size, channel.size() - offset));
+            channel.read(buffer, offset);
+            try {
+                return StudentRecordReader.readRecord(
+                        new DataInputStream(new ByteArrayInputStream(buffer.array(), 0, buffer.position())), courses);
+            } catch (EOFException e) {
+                if (offset + size >= channel.size()) {
+                    throw e;
+                }
+                size *= 2; // record is longer than the first read
+            }
+        }
+    }
+    
+    private void reopenChannel() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+        channel = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ);
+    }
+}
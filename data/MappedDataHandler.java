@@ -0,0 +1,486 @@
+package data;
+
+import model.Student;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Paged storage engine backed by a memory-mapped file
+ *
+ * Students live in fixed-size slots grouped into pages of a file mapped with
+ * FileChannel.map, so the dataset is not limited by the heap and reads are served
+ * from the OS page cache. Only an ID -> slot index is kept on the heap.
+ * Updates are written in place and deleted slots are chained into a free list.
+ * A student whose record does not fit in a slot is rejected with an
+ * IllegalArgumentException instead of being stored.
+ *
+ * File layout: a header page, then slots of SLOT_SIZE bytes:
+ * [state byte][record length (short)][record bytes] for used slots,
+ * [state byte][next free slot (int)] for free slots.
+ */
+public class MappedDataHandler extends DataHandler {
+    private static final String DATA_FILE = "students.pages";
+    private static final String IMPORT_FILE = "students.dat";
+    private static final int MAGIC = 0x53495350; // "SISP"
+    private static final int VERSION = 1;
+    
+    static final int PAGE_SIZE = 64 * 1024;
+    static final int SLOT_SIZE = 512;
+    private static final int SLOTS_PER_PAGE = PAGE_SIZE / SLOT_SIZE;
+    private static final int PAGES_PER_REGION = 256; // file grows and is mapped 16 MB at a time
+    private static final int SLOTS_PER_REGION = SLOTS_PER_PAGE * PAGES_PER_REGION;
+    private static final int HEADER_SIZE = PAGE_SIZE;
+    private static final int SLOT_HEADER = 3;
+    private static final int MAX_RECORD_SIZE = SLOT_SIZE - SLOT_HEADER;
+    
+    private static final byte FREE = 0;
+    private static final byte USED = 1;
+    private static final int NO_SLOT = -1;
+    
+    // Header field offsets
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_SLOT_SIZE = 8;
+    private static final int H_HIGH_WATER = 12;
+    private static final int H_FREE_HEAD = 16;
+    
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final List<MappedByteBuffer> regions = new ArrayList<>();
+    private final BitSet dirtyRegions = new BitSet();
+    private Map<String, Integer> slots = new HashMap<>();
+    private int highWater;
+    private int freeHead;
+    
+    public MappedDataHandler() {
+        this(DATA_FILE, IMPORT_FILE);
+    }
+    
+    /**
+     * @param dataFile   page file to open or create
+     * @param importFile student file to import when the page file is created, may be null
+     */
+    public MappedDataHandler(String dataFile, String importFile) {
+        try {
+            File pageFile = new File(dataFile);
+            boolean created = !pageFile.exists() || pageFile.length() < HEADER_SIZE;
+            file = new RandomAccessFile(pageFile, "rw");
+            channel = file.getChannel();
+            header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            
+            if (created) {
+                initializeHeader();
+            } else {
+                readHeader();
+            }
+            rebuildIndex();
+            
+            if (created && importFile != null && new File(importFile).exists()) {
+                try {
+                    replaceAll(StudentFileFormat.read(new File(importFile)));
+                } catch (IOException | IllegalArgumentException e) {
+                    // Drop the empty page file so the import is tried again once the data is fixed
+                    close();
+                    pageFile.delete();
+                    throw new IOException("Cannot import " + importFile + ": " + e.getMessage(), e);
+                }
+                recordReloaded();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error opening page file " + dataFile, e);
+        }
+    }
+    
+    private void initializeHeader() {
+        header.putInt(H_MAGIC, MAGIC);
+        header.putInt(H_VERSION, VERSION);
+        header.putInt(H_SLOT_SIZE, SLOT_SIZE);
+        setHighWater(0);
+        setFreeHead(NO_SLOT);
+        header.force();
+    }
+    
+    private void readHeader() throws IOException {
+        if (header.getInt(H_MAGIC) != MAGIC) {
+            throw new IOException("Not a student page file");
+        }
+        if (header.getInt(H_VERSION) != VERSION || header.getInt(H_SLOT_SIZE) != SLOT_SIZE) {
+            throw new IOException("Unsupported page file version or slot size");
+        }
+        highWater = header.getInt(H_HIGH_WATER);
+        freeHead = header.getInt(H_FREE_HEAD);
+    }
+    
+    /**
+     * Rebuild the in-heap ID index by scanning the used slots
+     * Only the ID field of each record is decoded
+     */
+    private void rebuildIndex() throws IOException {
+        slots = new HashMap<>();
+        for (int slot = 0; slot < highWater; slot++) {
+            byte[] record = readRecordBytes(slot);
+            if (record != null) {
+                slots.put(StudentRecordReader.readString(new DataInputStream(new ByteArrayInputStream(record))), slot);
+            }
+        }
+        recordReloaded();
+    }
+    
+    @Override
+    public synchronized List<Student> loadStudents() {
+        try {
+            rebuildIndex();
+        } catch (IOException e) {
+            System.err.println("Error loading students: " + e.getMessage());
+        }
+        publishChanges();
+        return getAllStudents();
+    }
+    
+    /**
+     * Replace the whole store with the given students
+     * Every record is encoded first, so a student that does not fit a slot leaves the store unchanged
+     */
+    @Override
+    public synchronized void saveStudents(List<Student> students) {
+        try {
+            replaceAll(students);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error saving students, store left unchanged: " + e.getMessage());
+            return;
+        } catch (IOException e) {
+            System.err.println("Error saving students: " + e.getMessage());
+        }
+        recordReloaded();
+        publishChanges();
+    }
+    
+    private void replaceAll(List<Student> students) throws IOException {
+        List<byte[]> records = new ArrayList<>(students.size());
+        for (Student student : students) {
+            records.add(encode(student));
+        }
+        
+        slots.clear();
+        setHighWater(0);
+        setFreeHead(NO_SLOT);
+        for (int i = 0; i < records.size(); i++) {
+            int slot = allocateSlot();
+            writeSlot(slot, records.get(i));
+            slots.put(students.get(i).getId(), slot);
+        }
+        force();
+    }
+    
+    @Override
+    public synchronized boolean addStudent(Student student) {
+        if (slots.containsKey(student.getId())) {
+            return false; // Student with this ID already exists
+        }
+        try {
+            insert(student);
+            force();
+            publishChanges();
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error adding student: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    @Override
+    public synchronized boolean updateStudent(Student student) {
+        Integer slot = slots.get(student.getId());
+        if (slot == null) {
+            return false;
+        }
+        try {
+            replace(slot, student);
+            force();
+            publishChanges();
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error updating student: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    @Override
+    public synchronized boolean deleteStudent(String id) {
+        Integer slot = slots.remove(id);
+        if (slot == null) {
+            return false;
+        }
+        try {
+            Student old = hasChangeListeners() ? readSlot(slot) : null;
+            freeSlot(slot);
+            force();
+            recordDeleted(old);
+            publishChanges();
+        } catch (IOException e) {
+            System.err.println("Error deleting student: " + e.getMessage());
+        }
+        return true;
+    }
+    
+    /**
+     * Write a batch into slots and force the touched pages once
+     */
+    @Override
+    public synchronized BatchResult addStudents(Collection<Student> batch) {
+        BatchResult result = new BatchResult(batch.size());
+        int row = 0;
+        for (Student student : batch) {
+            if (student == null || student.getId() == null) {
+                result.fail(row++, "Missing student ID");
+            } else if (slots.containsKey(student.getId())) {
+                result.record(row++, BatchResult.Outcome.DUPLICATE);
+            } else {
+                try {
+                    insert(student);
+                    result.record(row, BatchResult.Outcome.INSERTED);
+                } catch (IOException | IllegalArgumentException e) {
+                    result.fail(row, e.getMessage());
+                }
+                row++;
+            }
+        }
+        force();
+        publishChanges();
+        return result;
+    }
+    
+    @Override
+    public synchronized BatchResult upsertStudents(Collection<Student> batch) {
+        BatchResult result = new BatchResult(batch.size());
+        int row = 0;
+        for (Student student : batch) {
+            if (student == null || student.getId() == null) {
+                result.fail(row++, "Missing student ID");
+                continue;
+            }
+            try {
+                Integer slot = slots.get(student.getId());
+                if (slot != null) {
+                    replace(slot, student);
+                    result.record(row, BatchResult.Outcome.UPDATED);
+                } else {
+                    insert(student);
+                    result.record(row, BatchResult.Outcome.INSERTED);
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                result.fail(row, e.getMessage());
+            }
+            row++;
+        }
+        force();
+        publishChanges();
+        return result;
+    }
+    
+    private void insert(Student student) throws IOException {
+        byte[] record = encode(student);
+        int slot = allocateSlot();
+        writeSlot(slot, record);
+        slots.put(student.getId(), slot);
+        recordInserted(hasChangeListeners() ? new Student(student) : null); // not the caller's object
+    }
+    
+    private void replace(int slot, Student student) throws IOException {
+        byte[] record = encode(student);
+        Student old = hasChangeListeners() ? readSlot(slot) : null;
+        writeSlot(slot, record);
+        recordUpdated(old, hasChangeListeners() ? new Student(student) : null);
+    }
+    
+    @Override
+    public synchronized Student findStudentById(String id) {
+        Integer slot = slots.get(id);
+        if (slot == null) {
+            return null;
+        }
+        try {
+            return readSlot(slot);
+        } catch (IOException e) {
+            System.err.println("Error reading student: " + e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Students are listed in slot order, so sorting the slots of the IDs gives that order
+     */
+    @Override
+    public synchronized List<Student> findStudentsByIds(Collection<String> ids) {
+        int[] found = new int[ids.size()];
+        int count = 0;
+        for (String id : ids) {
+            Integer slot = slots.get(id);
+            if (slot != null) {
+                found[count++] = slot;
+            }
+        }
+        Arrays.sort(found, 0, count);
+        List<Student> matches = new ArrayList<>(count);
+        try {
+            for (int i = 0; i < count; i++) {
+                if (i == 0 || found[i] != found[i - 1]) {
+                    matches.add(readSlot(found[i]));
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading students: " + e.getMessage());
+        }
+        return matches;
+    }
+    
+    @Override
+    public synchronized StudentSnapshot getSnapshot() {
+        return super.getSnapshot();
+    }
+    
+    @Override
+    public synchronized List<Student> getAllStudents() {
+        List<Student> students = new ArrayList<>(slots.size());
+        try {
+            for (int slot = 0; slot < highWater; slot++) {
+                Student student = readSlot(slot);
+                if (student != null) {
+                    students.add(student);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading students: " + e.getMessage());
+        }
+        return students;
+    }
+    
+    private int allocateSlot() throws IOException {
+        if (freeHead != NO_SLOT) {
+            int slot = freeHead;
+            setFreeHead(region(slot).getInt(offset(slot) + 1));
+            return slot;
+        }
+        int slot = highWater;
+        region(slot); // make sure the region holding the slot is mapped
+        setHighWater(highWater + 1);
+        return slot;
+    }
+    
+    private void freeSlot(int slot) throws IOException {
+        MappedByteBuffer region = region(slot);
+        int offset = offset(slot);
+        region.put(offset, FREE);
+        region.putInt(offset + 1, freeHead);
+        setFreeHead(slot);
+        dirtyRegions.set(slot / SLOTS_PER_REGION);
+    }
+    
+    private void writeSlot(int slot, byte[] record) throws IOException {
+        MappedByteBuffer region = region(slot);
+        int offset = offset(slot);
+        region.put(offset, USED);
+        region.putShort(offset + 1, (short) record.length);
+        ByteBuffer target = region.duplicate();
+        target.position(offset + SLOT_HEADER);
+        target.put(record);
+        dirtyRegions.set(slot / SLOTS_PER_REGION);
+    }
+    
+    private Student readSlot(int slot) throws IOException {
+        byte[] record = readRecordBytes(slot);
+        if (record == null) {
+            return null;
+        }
+        return StudentRecordReader.readRecord(new DataInputStream(new ByteArrayInputStream(record)));
+    }
+    
+    private byte[] readRecordBytes(int slot) throws IOException {
+        MappedByteBuffer region = region(slot);
+        int offset = offset(slot);
+        if (region.get(offset) != USED) {
+            return null;
+        }
+        byte[] record = new byte[region.getShort(offset + 1)];
+        ByteBuffer source = region.duplicate();
+        source.position(offset + SLOT_HEADER);
+        source.get(record);
+        return record;
+    }
+    
+    /**
+     * @throws IllegalArgumentException if the record does not fit in a slot
+     */
+    private static byte[] encode(Student student) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(128);
+        StudentRecordWriter.writeRecord(new DataOutputStream(buffer), student);
+        if (buffer.size() > MAX_RECORD_SIZE) {
+            throw new IllegalArgumentException("Student " + student.getId() + " is too long to store (" +
+                    buffer.size() + " bytes, at most " + MAX_RECORD_SIZE + ")");
+        }
+        return buffer.toByteArray();
+    }
+    
+    /**
+     * Mapped region holding a slot, growing the file when needed
+     */
+    private MappedByteBuffer region(int slot) throws IOException {
+        int index = slot / SLOTS_PER_REGION;
+        while (regions.size() <= index) {
+            long position = HEADER_SIZE + (long) regions.size() * SLOTS_PER_REGION * SLOT_SIZE;
+            regions.add(channel.map(FileChannel.MapMode.READ_WRITE, position, (long) SLOTS_PER_REGION * SLOT_SIZE));
+        }
+        return regions.get(index);
+    }
+    
+    private static int offset(int slot) {
+        return (slot % SLOTS_PER_REGION) * SLOT_SIZE;
+    }
+    
+    private void setHighWater(int value) {
+        highWater = value;
+        header.putInt(H_HIGH_WATER, value);
+    }
+    
+    private void setFreeHead(int value) {
+        freeHead = value;
+        header.putInt(H_FREE_HEAD, value);
+    }
+    
+    @Override
+    public synchronized void flush() {
+        force();
+    }
+    
+    @Override
+    public synchronized void close() {
+        force();
+        try {
+            channel.close();
+            file.close();
+        } catch (IOException e) {
+            System.err.println("Error closing page file: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Write dirty pages back to the file
+     */
+    private void force() {
+        for (int i = dirtyRegions.nextSetBit(0); i >= 0; i = dirtyRegions.nextSetBit(i + 1)) {
+            regions.get(i).force();
+        }
+        dirtyRegions.clear();
+        header.force();
+    }
+}
@@ -0,0 +1,696 @@
+package data;
+
+import model.Student;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * Data handler that keeps student records outside the Java heap
+ *
+ * Each student is encoded once (record layout of StudentRecordWriter) into
+ * direct ByteBuffers allocated 16 MB at a time. The heap only holds a few
+ * primitive arrays: row -> record address, row -> ID hash and an open
+ * addressing hash table of rows, so millions of students cost a handful of
+ * objects for the garbage collector instead of seven per student.
+ *
+ * Fields are read in place by flyweight accessors (ID comparison, year and
+ * course for the columns); Student objects are only created when a caller asks
+ * for them. Updates append a new record and deletes leave a hole; the buffers
+ * are compacted once more than half of their bytes are garbage.
+ *
+ * A snapshot is a view over the record addresses of its version (8 bytes per
+ * student) that decodes each student when it is read, so scans, searches and
+ * index rebuilds stream through the records without keeping them on the heap.
+ * Records are never overwritten in place, so a view stays valid after later
+ * writes; after a compaction it keeps the old buffers alive until it is dropped.
+ *
+ * Persistence follows LazyFileDataHandler: changes are appended to the journal
+ * and students.dat is rewritten by streaming the records once the journal
+ * grows past a threshold.
+ */
+public class OffHeapDataHandler extends DataHandler {
+    private static final String DATA_FILE = "students.dat";
+    private static final String JOURNAL_SUFFIX = ".log";
+    private static final long COMPACTION_THRESHOLD = 4L * 1024 * 1024; // journal bytes
+    private static final int CHUNK_SIZE = 16 * 1024 * 1024;
+    private static final int LENGTH_PREFIX = 4;
+    private static final long NO_RECORD = -1;
+    private static final int EMPTY = -1;
+    
+    private final File dataFile;
+    private final File journalFile;
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private long used; // bytes allocated in chunks, including garbage
+    private long garbage;
+    
+    // Row arrays, in insertion order; deleted rows have NO_RECORD
+    private long[] addresses = new long[1024];
+    private int[] hashes = new int[1024];
+    private int rowCount;
+    private int liveCount;
+    
+    // Linear probing table of row numbers, EMPTY for free buckets
+    private int[] table = newTable(2048);
+    
+    private final ByteArrayOutputStream encodeBuffer = new ByteArrayOutputStream(256);
+    private StudentJournal journal;
+    
+    public OffHeapDataHandler() {
+        this(DATA_FILE);
+    }
+    
+    /**
+     * @throws UncheckedIOException if the data file exists but cannot be read
+     */
+    public OffHeapDataHandler(String dataFile) {
+        this.dataFile = new File(dataFile);
+        this.journalFile = new File(dataFile + JOURNAL_SUFFIX);
+        try {
+            load();
+        } catch (IOException e) {
+            // Fail instead of starting empty: the next compaction would overwrite the file
+            throw new UncheckedIOException("Error loading " + this.dataFile.getName(), e);
+        }
+    }
+    
+    private static int[] newTable(int capacity) {
+        int[] table = new int[capacity];
+        Arrays.fill(table, EMPTY);
+        return table;
+    }
+    
+    /**
+     * @throws UncheckedIOException if the data file cannot be read; the students
+     *                              loaded before are kept
+     */
+    @Override
+    public synchronized List<Student> loadStudents() {
+        List<ByteBuffer> oldChunks = new ArrayList<>(chunks);
+        long oldUsed = used;
+        long oldGarbage = garbage;
+        long[] oldAddresses = addresses;
+        int[] oldHashes = hashes;
+        int oldRowCount = rowCount;
+        int oldLiveCount = liveCount;
+        int[] oldTable = table;
+        try {
+            load();
+        } catch (IOException e) {
+            // Put the previous records back, a partial set would be compacted over the file
+            chunks.clear();
+            chunks.addAll(oldChunks);
+            used = oldUsed;
+            garbage = oldGarbage;
+            addresses = oldAddresses;
+            hashes = oldHashes;
+            rowCount = oldRowCount;
+            liveCount = oldLiveCount;
+            table = oldTable;
+            recordReloaded();
+            throw new UncheckedIOException("Error loading " + dataFile.getName(), e);
+        }
+        publishChanges();
+        return new ArrayList<>(getSnapshot().getStudents());
+    }
+    
+    /**
+     * Stream students.dat into off-heap records and replay the journal on top
+     */
+    private void load() throws IOException {
+        clear();
+        StudentFileFormat.migrateLegacy(dataFile);
+        if (StudentFileFormat.detect(dataFile) == StudentFileFormat.BINARY) {
+            try (StudentRecordReader reader = new StudentRecordReader(new FileInputStream(dataFile))) {
+                while (reader.hasNext()) {
+                    put(reader.next());
+                }
+            }
+        } else {
+            for (Student student : StudentFileFormat.read(dataFile)) {
+                put(student);
+            }
+        }
+        if (journal != null) {
+            journal.close();
+        }
+        try {
+            StudentJournal.replay(journalFile, entry -> {
+                if (entry.op == StudentJournal.Op.DELETE) {
+                    remove(entry.id);
+                } else {
+                    put(entry.student);
+                }
+            });
+        } finally {
+            journal = new StudentJournal(journalFile);
+        }
+        recordReloaded();
+    }
+    
+    @Override
+    public synchronized void saveStudents(List<Student> students) {
+        clear();
+        for (Student student : students) {
+            put(student);
+        }
+        recordReloaded();
+        writeDataFile();
+        publishChanges();
+    }
+    
+    @Override
+    public synchronized boolean addStudent(Student student) {
+        if (findRow(student.getId()) != EMPTY) {
+            return false; // Student with this ID already exists
+        }
+        put(student);
+        journalPut(student);
+        publishChanges();
+        return true;
+    }
+    
+    @Override
+    public synchronized boolean updateStudent(Student student) {
+        if (findRow(student.getId()) == EMPTY) {
+            return false;
+        }
+        put(student);
+        journalPut(student);
+        publishChanges();
+        return true;
+    }
+    
+    @Override
+    public synchronized boolean deleteStudent(String id) {
+        if (!remove(id)) {
+            return false;
+        }
+        try {
+            journal.appendDelete(id);
+            journal.flush();
+        } catch (IOException e) {
+            System.err.println("Error writing journal: " + e.getMessage());
+        }
+        compactIfNeeded();
+        publishChanges();
+        return true;
+    }
+    
+    /**
+     * Store the batch off-heap and journal it with a single flush
+     */
+    @Override
+    public synchronized BatchResult addStudents(Collection<Student> students) {
+        return applyBatch(students, false);
+    }
+    
+    @Override
+    public synchronized BatchResult upsertStudents(Collection<Student> students) {
+        return applyBatch(students, true);
+    }
+    
+    private BatchResult applyBatch(Collection<Student> students, boolean upsert) {
+        BatchResult result = new BatchResult(students.size());
+        int row = 0;
+        try {
+            for (Student student : students) {
+                if (student == null || student.getId() == null) {
+                    result.fail(row++, "Missing student ID");
+                    continue;
+                }
+                boolean exists = findRow(student.getId()) != EMPTY;
+                if (exists && !upsert) {
+                    result.record(row++, BatchResult.Outcome.DUPLICATE);
+                    continue;
+                }
+                put(student);
+                journal.appendPut(student);
+                result.record(row++, exists ? BatchResult.Outcome.UPDATED : BatchResult.Outcome.INSERTED);
+            }
+            journal.flush();
+        } catch (IOException e) {
+            System.err.println("Error writing journal: " + e.getMessage());
+        }
+        compactIfNeeded();
+        publishChanges();
+        return result;
+    }
+    
+    @Override
+    public synchronized Student findStudentById(String id) {
+        int row = findRow(id);
+        return row == EMPTY ? null : readStudent(addresses[row]);
+    }
+    
+    /**
+     * Rows are in snapshot order, so sorting the rows of the IDs gives that order
+     */
+    @Override
+    public synchronized List<Student> findStudentsByIds(Collection<String> ids) {
+        int[] found = new int[ids.size()];
+        int count = 0;
+        for (String id : ids) {
+            int row = findRow(id);
+            if (row != EMPTY) {
+                found[count++] = row;
+            }
+        }
+        Arrays.sort(found, 0, count);
+        List<Student> matches = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || found[i] != found[i - 1]) {
+                matches.add(readStudent(addresses[found[i]]));
+            }
+        }
+        return matches;
+    }
+    
+    @Override
+    public List<Student> getAllStudents() {
+        return getSnapshot().getStudents();
+    }
+    
+    @Override
+    public synchronized StudentSnapshot getSnapshot() {
+        return super.getSnapshot();
+    }
+    
+    /**
+     * View over the live records; searches filter it with ParallelScan like any
+     * snapshot, materializing one student at a time and keeping only the matches
+     */
+    @Override
+    protected StudentSnapshot readSnapshot(long version) {
+        long[] live = new long[liveCount];
+        int i = 0;
+        for (int row = 0; row < rowCount; row++) {
+            if (addresses[row] != NO_RECORD) {
+                live[i++] = addresses[row];
+            }
+        }
+        return StudentSnapshot.wrap(version, new RecordList(chunks.toArray(new ByteBuffer[0]), live));
+    }
+    
+    /**
+     * Build the year and course columns straight from the records
+     */
+    @Override
+    public synchronized StudentColumns getColumns() {
+        return super.getColumns();
+    }
+    
+    @Override
+    protected StudentColumns readColumns(long version) {
+        int[] years = new int[liveCount];
+        String[] courses = new String[liveCount];
+        int i = 0;
+        for (int row = 0; row < rowCount; row++) {
+            if (addresses[row] != NO_RECORD) {
+                Cursor cursor = new Cursor(addresses[row]);
+                cursor.skipString(); // id
+                cursor.skipString(); // name
+                courses[i] = StringDictionary.COURSES.intern(cursor.readString());
+                years[i++] = StudentRecordReader.unZigZag(cursor.readVarInt());
+            }
+        }
+        return StudentColumns.of(version, years, courses);
+    }
+    
+    /**
+     * Bytes of off-heap memory currently allocated
+     */
+    public synchronized long getOffHeapBytes() {
+        return (long) chunks.size() * CHUNK_SIZE;
+    }
+    
+    @Override
+    public synchronized void flush() {
+        try {
+            journal.flush();
+        } catch (IOException e) {
+            System.err.println("Error writing journal: " + e.getMessage());
+        }
+    }
+    
+    @Override
+    public synchronized void close() {
+        try {
+            journal.close();
+        } catch (IOException e) {
+            System.err.println("Error closing journal: " + e.getMessage());
+        }
+        clear(); // direct buffers are released once unreachable
+    }
+    
+    // ---- record storage ----
+    
+    private void clear() {
+        chunks.clear();
+        used = 0;
+        garbage = 0;
+        addresses = new long[1024];
+        hashes = new int[1024];
+        rowCount = 0;
+        liveCount = 0;
+        table = newTable(2048);
+    }
+    
+    /**
+     * Insert or replace the record for a student
+     */
+    private void put(Student student) {
+        long address = append(encode(student));
+        int row = findRow(student.getId());
+        if (row != EMPTY) {
+            Student old = hasChangeListeners() ? readStudent(addresses[row]) : null;
+            garbage += recordSize(addresses[row]);
+            addresses[row] = address;
+            recordUpdated(old, hasChangeListeners() ? readStudent(address) : null); // not the caller's object
+            compactMemoryIfNeeded();
+            return;
+        }
+        if (rowCount == addresses.length) {
+            addresses = Arrays.copyOf(addresses, rowCount * 2);
+            hashes = Arrays.copyOf(hashes, rowCount * 2);
+        }
+        row = rowCount++;
+        addresses[row] = address;
+        hashes[row] = student.getId().hashCode();
+        liveCount++;
+        recordInserted(hasChangeListeners() ? readStudent(address) : null);
+        if (liveCount * 2 > table.length) {
+            rehash(table.length * 2);
+        } else {
+            insertRow(row);
+        }
+        compactMemoryIfNeeded();
+    }
+    
+    private boolean remove(String id) {
+        int bucket = findBucket(id);
+        if (bucket == EMPTY) {
+            return false;
+        }
+        int row = table[bucket];
+        recordDeleted(hasChangeListeners() ? readStudent(addresses[row]) : null);
+        garbage += recordSize(addresses[row]);
+        addresses[row] = NO_RECORD;
+        liveCount--;
+        deleteBucket(bucket);
+        compactMemoryIfNeeded();
+        return true;
+    }
+    
+    private byte[] encode(Student student) {
+        encodeBuffer.reset();
+        try {
+            StudentRecordWriter.writeRecord(new DataOutputStream(encodeBuffer), student);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // cannot happen for an in-memory stream
+        }
+        return encodeBuffer.toByteArray();
+    }
+    
+    private long append(byte[] record) {
+        int size = LENGTH_PREFIX + record.length;
+        if (size > CHUNK_SIZE) {
+            throw new IllegalArgumentException("Student record exceeds " + CHUNK_SIZE + " bytes");
+        }
+        long end = (long) chunks.size() * CHUNK_SIZE;
+        if (used + size > end) {
+            garbage += end - used; // tail of the previous chunk stays unused
+            chunks.add(ByteBuffer.allocateDirect(CHUNK_SIZE));
+            used = end;
+        }
+        int offset = offset(used);
+        ByteBuffer chunk = chunks.get(chunks.size() - 1);
+        chunk.putInt(offset, record.length);
+        ByteBuffer target = chunk.duplicate();
+        target.position(offset + LENGTH_PREFIX);
+        target.put(record);
+        long address = used;
+        used += size;
+        return address;
+    }
+    
+    private int recordSize(long address) {
+        return LENGTH_PREFIX + chunk(address).getInt(offset(address));
+    }
+    
+    private ByteBuffer chunk(long address) {
+        return chunks.get((int) (address / CHUNK_SIZE));
+    }
+    
+    private static int offset(long address) {
+        return (int) (address % CHUNK_SIZE);
+    }
+    
+    private Student readStudent(long address) {
+        return readStudent(chunk(address), offset(address));
+    }
+    
+    private static Student readStudent(ByteBuffer chunk, int offset) {
+        byte[] record = new byte[chunk.getInt(offset)];
+        ByteBuffer source = chunk.duplicate();
+        source.position(offset + LENGTH_PREFIX);
+        source.get(record);
+        try {
+            return StudentRecordReader.readRecord(new DataInputStream(new ByteArrayInputStream(record)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupt off-heap record", e);
+        }
+    }
+    
+    /**
+     * Copy the live records into fresh buffers once most of the memory is garbage
+     */
+    private void compactMemoryIfNeeded() {
+        if (garbage < CHUNK_SIZE || garbage * 2 < used) {
+            return;
+        }
+        List<ByteBuffer> oldChunks = new ArrayList<>(chunks);
+        long[] oldAddresses = addresses;
+        int oldRowCount = rowCount;
+        chunks.clear();
+        used = 0;
+        garbage = 0;
+        addresses = new long[Math.max(1024, liveCount * 2)];
+        int[] oldHashes = hashes;
+        hashes = new int[addresses.length];
+        rowCount = 0;
+        for (int row = 0; row < oldRowCount; row++) {
+            long address = oldAddresses[row];
+            if (address == NO_RECORD) {
+                continue;
+            }
+            ByteBuffer chunk = oldChunks.get((int) (address / CHUNK_SIZE));
+            int offset = offset(address);
+            byte[] record = new byte[chunk.getInt(offset)];
+            ByteBuffer source = chunk.duplicate();
+            source.position(offset + LENGTH_PREFIX);
+            source.get(record);
+            addresses[rowCount] = append(record);
+            hashes[rowCount++] = oldHashes[row];
+        }
+        rehash(table.length);
+    }
+    
+    // ---- hash index ----
+    
+    private void rehash(int capacity) {
+        table = newTable(capacity);
+        for (int row = 0; row < rowCount; row++) {
+            if (addresses[row] != NO_RECORD) {
+                insertRow(row);
+            }
+        }
+    }
+    
+    private void insertRow(int row) {
+        int mask = table.length - 1;
+        int bucket = spread(hashes[row]) & mask;
+        while (table[bucket] != EMPTY) {
+            bucket = (bucket + 1) & mask;
+        }
+        table[bucket] = row;
+    }
+    
+    private int findRow(String id) {
+        int bucket = findBucket(id);
+        return bucket == EMPTY ? EMPTY : table[bucket];
+    }
+    
+    private int findBucket(String id) {
+        if (id == null) {
+            return EMPTY;
+        }
+        int hash = id.hashCode();
+        byte[] key = null;
+        int mask = table.length - 1;
+        for (int bucket = spread(hash) & mask; table[bucket] != EMPTY; bucket = (bucket + 1) & mask) {
+            int row = table[bucket];
+            if (hashes[row] == hash) {
+                if (key == null) {
+                    key = id.getBytes(StandardCharsets.UTF_8);
+                }
+                if (new Cursor(addresses[row]).stringEquals(key)) {
+                    return bucket;
+                }
+            }
+        }
+        return EMPTY;
+    }
+    
+    /**
+     * Remove a bucket and shift later entries of the probe sequence back into place
+     */
+    private void deleteBucket(int bucket) {
+        int mask = table.length - 1;
+        int hole = bucket;
+        table[hole] = EMPTY;
+        for (int next = (hole + 1) & mask; table[next] != EMPTY; next = (next + 1) & mask) {
+            int home = spread(hashes[table[next]]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                table[hole] = table[next];
+                table[next] = EMPTY;
+                hole = next;
+            }
+        }
+    }
+    
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+    
+    /**
+     * Students of a snapshot, decoded from their records on every access
+     */
+    private static final class RecordList extends AbstractList<Student> implements RandomAccess {
+        private final ByteBuffer[] chunks;
+        private final long[] addresses;
+        
+        RecordList(ByteBuffer[] chunks, long[] addresses) {
+            this.chunks = chunks;
+            this.addresses = addresses;
+        }
+        
+        @Override
+        public Student get(int index) {
+            long address = addresses[index];
+            return readStudent(chunks[(int) (address / CHUNK_SIZE)], offset(address));
+        }
+        
+        @Override
+        public int size() {
+            return addresses.length;
+        }
+    }
+    
+    /**
+     * Flyweight reader over one record in place
+     */
+    private class Cursor {
+        private final ByteBuffer chunk;
+        private int position;
+        
+        Cursor(long address) {
+            chunk = chunk(address);
+            position = offset(address) + LENGTH_PREFIX;
+        }
+        
+        int readVarInt() {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                int b = chunk.get(position++) & 0xFF;
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+        }
+        
+        void skipString() {
+            int length = readVarInt();
+            position += Math.max(0, length - 1);
+        }
+        
+        String readString() {
+            int length = readVarInt();
+            if (length == 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length - 1];
+            ByteBuffer source = chunk.duplicate();
+            source.position(position);
+            source.get(bytes);
+            position += bytes.length;
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        
+        boolean stringEquals(byte[] expected) {
+            if (readVarInt() != expected.length + 1) {
+                return false;
+            }
+            for (byte b : expected) {
+                if (chunk.get(position++) != b) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+    
+    // ---- persistence ----
+    
+    private void journalPut(Student student) {
+        try {
+            journal.appendPut(student);
+            journal.flush();
+        } catch (IOException e) {
+            System.err.println("Error writing journal: " + e.getMessage());
+        }
+        compactIfNeeded();
+    }
+    
+    private void compactIfNeeded() {
+        if (journal.size() >= COMPACTION_THRESHOLD) {
+            writeDataFile();
+        }
+    }
+    
+    /**
+     * Stream every record into a new students.dat and start an empty journal
+     */
+    private void writeDataFile() {
+        File tempFile = new File(dataFile.getPath() + ".tmp");
+        try {
+            Set<String> courses = new LinkedHashSet<>();
+            for (String course : getColumns().countByCourse().keySet()) {
+                courses.add(course);
+            }
+            try (StudentRecordWriter writer = new StudentRecordWriter(new FileOutputStream(tempFile), liveCount, courses)) {
+                for (int row = 0; row < rowCount; row++) {
+                    if (addresses[row] != NO_RECORD) {
+                        writer.write(readStudent(addresses[row]));
+                    }
+                }
+            }
+            Files.move(tempFile.toPath(), dataFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            journal.truncate();
+        } catch (IOException e) {
+            System.err.println("Error saving students: " + e.getMessage());
+        }
+    }
+}
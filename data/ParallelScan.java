@@ -0,0 +1,95 @@
+package data;
+
+import model.Student;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Predicate;
+
+/**
+ * Fork/join filter over a snapshot list
+ *
+ * The list is split into partitions of PARTITION_SIZE students, small enough
+ * for the references and the students they touch to stay in a core's cache.
+ * Each partition is filtered by its own task on the common ForkJoinPool (the
+ * calling thread takes part through invoke) into its own slot, and the slots
+ * are concatenated in partition order, so the result has the same order as a
+ * sequential scan. Lists below PARALLEL_THRESHOLD, or a machine with a single
+ * core, are scanned sequentially since splitting would only add overhead.
+ */
+final class ParallelScan {
+    static final int PARTITION_SIZE = 8192;
+    static final int PARALLEL_THRESHOLD = 65536;
+    
+    private ParallelScan() {
+    }
+    
+    /**
+     * Matching students in list order; the predicate may be called from several threads
+     */
+    static List<Student> filter(List<Student> students, Predicate<Student> predicate) {
+        int size = students.size();
+        if (size < PARALLEL_THRESHOLD || Runtime.getRuntime().availableProcessors() < 2) {
+            return filterRange(students, predicate, 0, size);
+        }
+        
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        List<Student>[] parts = new List[(size + PARTITION_SIZE - 1) / PARTITION_SIZE];
+        ForkJoinPool.commonPool().invoke(new FilterTask(students, predicate, 0, size, parts));
+        
+        int total = 0;
+        for (List<Student> part : parts) {
+            total += part.size();
+        }
+        List<Student> matches = new ArrayList<>(total);
+        for (List<Student> part : parts) {
+            matches.addAll(part);
+        }
+        return matches;
+    }
+    
+    private static List<Student> filterRange(List<Student> students, Predicate<Student> predicate, int from, int to) {
+        List<Student> matches = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            Student student = students.get(i);
+            if (predicate.test(student)) {
+                matches.add(student);
+            }
+        }
+        return matches;
+    }
+    
+    /**
+     * Splits its range on partition boundaries until a single partition is left
+     */
+    private static final class FilterTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        
+        private final List<Student> students;
+        private final Predicate<Student> predicate;
+        private final int from;
+        private final int to;
+        private final List<Student>[] parts;
+        
+        FilterTask(List<Student> students, Predicate<Student> predicate, int from, int to, List<Student>[] parts) {
+            this.students = students;
+            this.predicate = predicate;
+            this.from = from;
+            this.to = to;
+            this.parts = parts;
+        }
+        
+        @Override
+        protected void compute() {
+            int partitions = (to - from + PARTITION_SIZE - 1) / PARTITION_SIZE;
+            if (partitions <= 1) {
+                parts[from / PARTITION_SIZE] = filterRange(students, predicate, from, to);
+                return;
+            }
+            int mid = from + partitions / 2 * PARTITION_SIZE;
+            invokeAll(new FilterTask(students, predicate, from, mid, parts),
+                      new FilterTask(students, predicate, mid, to, parts));
+        }
+    }
+}
@@ -0,0 +1,484 @@
+package data;
+
+import model.Student;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Data handler that partitions students by ID hash across several shard files
+ *
+ * Shards are loaded, saved and searched in parallel on a thread pool. Each
+ * shard has its own lock and dirty flag, so a mutation only blocks and rewrites
+ * the shard holding that ID. Students are returned shard by shard, so the
+ * overall order is not the insertion order. Each shard numbers its IDs in
+ * insertion order, so lookups by ID can return them in that same order
+ * without scanning.
+ *
+ * A new store writes every shard file, empty or not, and then a manifest
+ * (prefix + "s") holding the shard count. A store with a missing shard is
+ * refused rather than opened with fewer shards, which would hash IDs to the
+ * wrong files and drop every student of the missing ones.
+ */
+public class ShardedDataHandler extends DataHandler {
+    private static final String DATA_FILE = "students.dat";
+    private static final String SHARD_PREFIX = "students.shard";
+    private static final String MANIFEST_SUFFIX = "s";
+    
+    /**
+     * One partition of the data with its own file, lock and dirty flag
+     */
+    private static class Shard {
+        final File file;
+        final Map<String, Student> students = new LinkedHashMap<>();
+        final Map<String, Long> positions = new HashMap<>(); // ascending in the order of students
+        long nextPosition;
+        boolean dirty;
+        
+        Shard(File file) {
+            this.file = file;
+        }
+        
+        synchronized void load() throws IOException {
+            List<Student> loaded = StudentFileFormat.read(file); // keep the old contents if this fails
+            clear();
+            for (Student student : loaded) {
+                put(student);
+            }
+            dirty = false;
+        }
+        
+        /**
+         * Store a student and return the one it replaced; a new ID goes last
+         */
+        Student put(Student student) {
+            Student old = students.put(student.getId(), student);
+            if (old == null) {
+                positions.put(student.getId(), nextPosition++);
+            }
+            return old;
+        }
+        
+        Student remove(String id) {
+            positions.remove(id);
+            return students.remove(id);
+        }
+        
+        void clear() {
+            students.clear();
+            positions.clear();
+        }
+        
+        synchronized void saveIfDirty() throws IOException {
+            if (dirty) {
+                StudentFileFormat.write(file, new ArrayList<>(students.values()));
+                dirty = false;
+            }
+        }
+    }
+    
+    private final Shard[] shards;
+    private final ExecutorService pool;
+    
+    public ShardedDataHandler() {
+        this(SHARD_PREFIX, Runtime.getRuntime().availableProcessors(), DATA_FILE);
+    }
+    
+    /**
+     * @param shardPrefix  shard files are named prefix + index
+     * @param shardCount   number of shards for a new store; an existing store keeps its own count
+     * @param importFile   student file imported when no shards exist yet, may be null
+     * @throws UncheckedIOException if the store is missing a shard, a shard or its manifest
+     *                              cannot be read, or the import file cannot be read
+     */
+    public ShardedDataHandler(String shardPrefix, int shardCount, String importFile) {
+        File manifest = new File(shardPrefix + MANIFEST_SUFFIX);
+        int existing;
+        try {
+            existing = existingShardCount(shardPrefix, manifest);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error opening shards " + shardPrefix + "*", e);
+        }
+        int count = existing > 0 ? existing : Math.max(1, shardCount);
+        
+        shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard(new File(shardPrefix + i));
+        }
+        pool = Executors.newFixedThreadPool(Math.min(count, Runtime.getRuntime().availableProcessors()), r -> {
+            Thread thread = new Thread(r, "students-shard-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        
+        try {
+            loadStudents();
+        } catch (UncheckedIOException e) {
+            // Fail instead of starting with a hole: the next save would overwrite the shard
+            pool.shutdown();
+            throw e;
+        }
+        if (existing == 0) {
+            List<Student> imported = new ArrayList<>();
+            if (importFile != null && new File(importFile).exists()) {
+                try {
+                    imported = StudentFileFormat.read(new File(importFile));
+                } catch (IOException e) {
+                    pool.shutdown();
+                    throw new UncheckedIOException("Error importing " + importFile, e);
+                }
+            }
+            saveStudents(imported); // writes every shard, including empty ones
+            writeManifest(manifest, count);
+        } else if (!manifest.exists()) {
+            writeManifest(manifest, count);
+        }
+    }
+    
+    /**
+     * Shard count of an existing store, 0 if there is none
+     * Stores created before the manifest are accepted if their shards have no gaps
+     */
+    private static int existingShardCount(String shardPrefix, File manifest) throws IOException {
+        int count;
+        if (manifest.exists()) {
+            String text = new String(Files.readAllBytes(manifest.toPath()), StandardCharsets.UTF_8).trim();
+            try {
+                count = Integer.parseInt(text);
+            } catch (NumberFormatException e) {
+                throw new IOException("Corrupt shard manifest " + manifest.getName() + ": '" + text + "'");
+            }
+            if (count < 1) {
+                throw new IOException("Corrupt shard manifest " + manifest.getName() + ": " + count + " shards");
+            }
+        } else {
+            count = highestShard(shardPrefix) + 1;
+        }
+        for (int i = 0; i < count; i++) {
+            if (!new File(shardPrefix + i).exists()) {
+                throw new IOException("Missing shard " + shardPrefix + i + " of " + count);
+            }
+        }
+        return count;
+    }
+    
+    private static int highestShard(String shardPrefix) {
+        File prefix = new File(shardPrefix).getAbsoluteFile();
+        String[] names = prefix.getParentFile().list();
+        int highest = -1;
+        if (names != null) {
+            for (String name : names) {
+                if (name.startsWith(prefix.getName()) && name.length() > prefix.getName().length()) {
+                    try {
+                        highest = Math.max(highest, Integer.parseInt(name.substring(prefix.getName().length())));
+                    } catch (NumberFormatException e) {
+                        // not a shard, e.g. the manifest or a temporary file
+                    }
+                }
+            }
+        }
+        return highest;
+    }
+    
+    private static void writeManifest(File manifest, int count) {
+        try {
+            Files.write(manifest.toPath(), (count + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            System.err.println("Error writing " + manifest.getName() + ": " + e.getMessage());
+        }
+    }
+    
+    private Shard shardFor(String id) {
+        return shards[shardIndex(id)];
+    }
+    
+    private int shardIndex(String id) {
+        return Math.floorMod(id.hashCode(), shards.length);
+    }
+    
+    /**
+     * Run a task on every shard in parallel and collect the results in shard order
+     */
+    private <T> List<T> forEachShard(Function<Shard, T> task) {
+        List<Future<T>> futures = new ArrayList<>(shards.length);
+        for (Shard shard : shards) {
+            futures.add(pool.submit(() -> task.apply(shard)));
+        }
+        List<T> results = new ArrayList<>(shards.length);
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for shards", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Shard task failed", e.getCause());
+        }
+        return results;
+    }
+    
+    /**
+     * @throws UncheckedIOException if a shard cannot be read; that shard keeps the
+     *                              students loaded before, the others are reloaded
+     */
+    @Override
+    public List<Student> loadStudents() {
+        List<IOException> failures = forEachShard(shard -> {
+            try {
+                shard.load();
+                return null;
+            } catch (IOException e) {
+                return new IOException(shard.file.getName() + ": " + e.getMessage(), e);
+            }
+        });
+        recordReloaded();
+        publishChanges();
+        for (IOException failure : failures) {
+            if (failure != null) {
+                throw new UncheckedIOException("Error loading shards", failure);
+            }
+        }
+        return new ArrayList<>(getSnapshot().getStudents());
+    }
+    
+    @Override
+    public void saveStudents(List<Student> students) {
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                shard.clear();
+                shard.dirty = true;
+            }
+        }
+        for (Student student : students) {
+            Shard shard = shardFor(student.getId());
+            synchronized (shard) {
+                shard.put(new Student(student));
+            }
+        }
+        recordReloaded();
+        flush();
+        publishChanges();
+    }
+    
+    @Override
+    public boolean addStudent(Student student) {
+        Shard shard = shardFor(student.getId());
+        synchronized (shard) {
+            if (shard.students.containsKey(student.getId())) {
+                return false; // Student with this ID already exists
+            }
+            Student stored = new Student(student);
+            shard.put(stored);
+            recordInserted(stored);
+            changed(shard);
+        }
+        publishChanges();
+        return true;
+    }
+    
+    @Override
+    public boolean updateStudent(Student student) {
+        Shard shard = shardFor(student.getId());
+        synchronized (shard) {
+            if (!shard.students.containsKey(student.getId())) {
+                return false;
+            }
+            Student stored = new Student(student);
+            recordUpdated(shard.put(stored), stored);
+            changed(shard);
+        }
+        publishChanges();
+        return true;
+    }
+    
+    @Override
+    public boolean deleteStudent(String id) {
+        Shard shard = shardFor(id);
+        synchronized (shard) {
+            Student removed = shard.remove(id);
+            if (removed == null) {
+                return false;
+            }
+            recordDeleted(removed);
+            changed(shard);
+        }
+        publishChanges();
+        return true;
+    }
+    
+    /**
+     * Apply the batch to each shard, then rewrite the touched shards in parallel
+     */
+    @Override
+    public BatchResult addStudents(Collection<Student> students) {
+        return applyBatch(students, false);
+    }
+    
+    @Override
+    public BatchResult upsertStudents(Collection<Student> students) {
+        return applyBatch(students, true);
+    }
+    
+    private BatchResult applyBatch(Collection<Student> students, boolean upsert) {
+        BatchResult result = new BatchResult(students.size());
+        int row = 0;
+        for (Student student : students) {
+            if (student == null || student.getId() == null) {
+                result.fail(row++, "Missing student ID");
+                continue;
+            }
+            Shard shard = shardFor(student.getId());
+            synchronized (shard) {
+                boolean exists = shard.students.containsKey(student.getId());
+                if (exists && !upsert) {
+                    result.record(row++, BatchResult.Outcome.DUPLICATE);
+                    continue;
+                }
+                Student stored = new Student(student);
+                Student old = shard.put(stored);
+                shard.dirty = true;
+                if (exists) {
+                    recordUpdated(old, stored);
+                } else {
+                    recordInserted(stored);
+                }
+                result.record(row++, exists ? BatchResult.Outcome.UPDATED : BatchResult.Outcome.INSERTED);
+            }
+        }
+        flush();
+        publishChanges();
+        return result;
+    }
+    
+    private void changed(Shard shard) {
+        shard.dirty = true;
+        try {
+            shard.saveIfDirty();
+        } catch (IOException e) {
+            System.err.println("Error saving " + shard.file.getName() + ": " + e.getMessage());
+        }
+    }
+    
+    @Override
+    public Student findStudentById(String id) {
+        Shard shard = shardFor(id);
+        synchronized (shard) {
+            Student student = shard.students.get(id);
+            return student != null ? new Student(student) : null;
+        }
+    }
+    
+    /**
+     * Look each ID up in its own shard; the results follow the snapshot order,
+     * shard by shard and by insertion position within a shard
+     */
+    @Override
+    public List<Student> findStudentsByIds(Collection<String> ids) {
+        List<List<String>> idsByShard = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            idsByShard.add(new ArrayList<>());
+        }
+        for (String id : new HashSet<>(ids)) {
+            if (id != null) {
+                idsByShard.get(shardIndex(id)).add(id);
+            }
+        }
+        List<Student> found = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            List<String> shardIds = idsByShard.get(i);
+            if (shardIds.isEmpty()) {
+                continue;
+            }
+            Shard shard = shards[i];
+            synchronized (shard) {
+                shardIds.removeIf(id -> !shard.positions.containsKey(id));
+                shardIds.sort(Comparator.comparing(shard.positions::get));
+                for (String id : shardIds) {
+                    found.add(new Student(shard.students.get(id)));
+                }
+            }
+        }
+        return found;
+    }
+    
+    @Override
+    public List<Student> getAllStudents() {
+        return getSnapshot().getStudents();
+    }
+    
+    /**
+     * Copy every shard in parallel
+     */
+    @Override
+    protected List<Student> readAllStudents() {
+        List<Student> all = new ArrayList<>();
+        for (List<Student> part : forEachShard(shard -> {
+            synchronized (shard) {
+                return new ArrayList<>(shard.students.values());
+            }
+        })) {
+            all.addAll(part);
+        }
+        return all;
+    }
+    
+    /**
+     * Filter every shard in parallel
+     */
+    @Override
+    public List<Student> search(Predicate<Student> predicate) {
+        List<Student> matches = new ArrayList<>();
+        for (List<Student> part : forEachShard(shard -> {
+            List<Student> found = new ArrayList<>();
+            synchronized (shard) {
+                for (Student student : shard.students.values()) {
+                    if (predicate.test(student)) {
+                        found.add(student);
+                    }
+                }
+            }
+            return found;
+        })) {
+            matches.addAll(part);
+        }
+        return matches;
+    }
+    
+    /**
+     * Rewrite all dirty shards in parallel
+     */
+    @Override
+    public void flush() {
+        forEachShard(shard -> {
+            try {
+                shard.saveIfDirty();
+            } catch (IOException e) {
+                System.err.println("Error saving " + shard.file.getName() + ": " + e.getMessage());
+            }
+            return null;
+        });
+    }
+    
+    @Override
+    public void close() {
+        flush();
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,84 @@
+package data;
+
+/**
+ * Available storage engines for student data
+ * The engine is chosen with the system property "sis.storage" (e.g. -Dsis.storage=mapped);
+ * -Dsis.idindex=true maintains a B+tree over student IDs (students.idx) and
+ * -Dsis.concurrent=true additionally wraps it for use from many threads
+ */
+public enum StorageEngine {
+    /** Heap-resident list persisted to students.dat with a mutation journal */
+    FILE {
+        @Override
+        public DataHandler createHandler() {
+            return new FileDataHandler();
+        }
+    },
+    /** students.dat opened index-first: records are read on demand after a background ID scan */
+    LAZY {
+        @Override
+        public DataHandler createHandler() {
+            return new LazyFileDataHandler();
+        }
+    },
+    /** Students partitioned by ID hash across students.shard0..N, loaded and saved in parallel */
+    SHARDED {
+        @Override
+        public DataHandler createHandler() {
+            return new ShardedDataHandler();
+        }
+    },
+    /** Fixed-size slots in a memory-mapped page file (students.pages) */
+    MAPPED {
+        @Override
+        public DataHandler createHandler() {
+            return new MappedDataHandler();
+        }
+    },
+    /** Encoded records in direct buffers outside the heap, persisted like FILE */
+    OFFHEAP {
+        @Override
+        public DataHandler createHandler() {
+            return new OffHeapDataHandler();
+        }
+    };
+    
+    public static final String PROPERTY = "sis.storage";
+    public static final String CONCURRENT_PROPERTY = "sis.concurrent";
+    public static final String ID_INDEX_PROPERTY = "sis.idindex";
+    
+    /**
+     * Create a data handler backed by this engine
+     */
+    public abstract DataHandler createHandler();
+    
+    /**
+     * Create the handler selected by the system properties
+     */
+    public static DataHandler open() {
+        DataHandler handler = configured().createHandler();
+        if (Boolean.getBoolean(ID_INDEX_PROPERTY)) {
+            handler = new IdIndexedDataHandler(handler);
+        }
+        if (Boolean.getBoolean(CONCURRENT_PROPERTY)) {
+            handler = new ConcurrentDataHandler(handler);
+        }
+        return handler;
+    }
+    
+    /**
+     * Engine selected by the "sis.storage" system property, FILE if unset or unknown
+     */
+    public static StorageEngine configured() {
+        String value = System.getProperty(PROPERTY);
+        if (value == null || value.trim().isEmpty()) {
+            return FILE;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown storage engine '" + value + "', using " + FILE);
+            return FILE;
+        }
+    }
+}
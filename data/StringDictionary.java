@@ -0,0 +1,48 @@
+package data;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Canonical instances for low-cardinality string fields
+ *
+ * Values decoded from files and journals are replaced by one shared instance
+ * per distinct value, so thousands of students in the same course hold a
+ * single String and equality checks mostly succeed on identity. The pool is
+ * bounded; once full, new values are returned as they are.
+ */
+public final class StringDictionary {
+    /** Shared pool for Student.course */
+    public static final StringDictionary COURSES = new StringDictionary(4096);
+    
+    private final ConcurrentHashMap<String, String> values = new ConcurrentHashMap<>();
+    private final int capacity;
+    
+    public StringDictionary(int capacity) {
+        this.capacity = capacity;
+    }
+    
+    /**
+     * The canonical instance equal to value (null stays null)
+     */
+    public String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        String canonical = values.get(value);
+        if (canonical != null) {
+            return canonical;
+        }
+        if (values.size() >= capacity) {
+            return value;
+        }
+        canonical = values.putIfAbsent(value, value);
+        return canonical != null ? canonical : value;
+    }
+    
+    /**
+     * Number of distinct values held
+     */
+    public int size() {
+        return values.size();
+    }
+}
@@ -0,0 +1,75 @@
+package data;
+
+import model.Student;
+
+/**
+ * One change to the student data, as delivered to a StudentChangeListener
+ *
+ * INSERTED carries the new student, UPDATED the old and new values and
+ * DELETED the removed student. RELOADED means the whole data set was replaced
+ * (load or save of all students), so consumers should rebuild from a snapshot.
+ */
+public final class StudentChangeEvent {
+    public enum Type {
+        INSERTED, UPDATED, DELETED, RELOADED
+    }
+    
+    private static final StudentChangeEvent RELOADED_EVENT = new StudentChangeEvent(Type.RELOADED, null, null);
+    
+    private final Type type;
+    private final Student oldStudent;
+    private final Student newStudent;
+    
+    private StudentChangeEvent(Type type, Student oldStudent, Student newStudent) {
+        this.type = type;
+        this.oldStudent = oldStudent;
+        this.newStudent = newStudent;
+    }
+    
+    public static StudentChangeEvent inserted(Student student) {
+        return new StudentChangeEvent(Type.INSERTED, null, student);
+    }
+    
+    public static StudentChangeEvent updated(Student oldStudent, Student newStudent) {
+        return new StudentChangeEvent(Type.UPDATED, oldStudent, newStudent);
+    }
+    
+    public static StudentChangeEvent deleted(Student student) {
+        return new StudentChangeEvent(Type.DELETED, student, null);
+    }
+    
+    public static StudentChangeEvent reloaded() {
+        return RELOADED_EVENT;
+    }
+    
+    public Type getType() {
+        return type;
+    }
+    
+    /**
+     * Value before the change; null for INSERTED and RELOADED
+     */
+    public Student getOldStudent() {
+        return oldStudent;
+    }
+    
+    /**
+     * Value after the change; null for DELETED and RELOADED
+     */
+    public Student getNewStudent() {
+        return newStudent;
+    }
+    
+    /**
+     * ID of the changed student, null for RELOADED
+     */
+    public String getId() {
+        Student student = newStudent != null ? newStudent : oldStudent;
+        return student != null ? student.getId() : null;
+    }
+    
+    @Override
+    public String toString() {
+        return type + (type == Type.RELOADED ? "" : " " + getId());
+    }
+}
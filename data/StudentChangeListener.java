@@ -0,0 +1,15 @@
+package data;
+
+import java.util.List;
+
+/**
+ * Receives the changes made through a DataHandler
+ *
+ * Each call carries the events of one operation (a single change, or every
+ * row of a batch) in the order they were applied. Calls are made on the thread
+ * that made the change, after the handler's state is updated, so listeners
+ * should be quick and hand off longer work (e.g. to the Swing event thread).
+ */
+public interface StudentChangeListener {
+    void onChanges(List<StudentChangeEvent> events);
+}
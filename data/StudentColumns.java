@@ -0,0 +1,233 @@
+package data;
+
+import model.Student;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable column-oriented copy of the fields used by aggregate reports
+ *
+ * Years are held in a primitive int[] and courses are dictionary coded: each
+ * row stores an int code into a small array of distinct course names. Group-by
+ * counts then walk two int arrays instead of dereferencing every Student.
+ *
+ * Each column can be persisted to its own file (data file + ".year.col" /
+ * ".course.col") together with a stamp of the data file it was derived from,
+ * so a reader can load just the columns it needs and detect stale files.
+ */
+public final class StudentColumns {
+    private static final int MAGIC = 0x5349534B; // "SISK"
+    private static final int FORMAT_VERSION = 1;
+    private static final String YEAR_SUFFIX = ".year.col";
+    private static final String COURSE_SUFFIX = ".course.col";
+    private static final int MAX_YEAR_SPAN = 1024; // wider ranges are counted in a map
+    
+    private final long version;
+    private final int[] years;
+    private final int[] courseCodes;
+    private final String[] courses;
+    
+    private StudentColumns(long version, int[] years, int[] courseCodes, String[] courses) {
+        this.version = version;
+        this.years = years;
+        this.courseCodes = courseCodes;
+        this.courses = courses;
+    }
+    
+    /**
+     * Build the columns from a snapshot, labelled with the snapshot's version
+     */
+    public static StudentColumns of(StudentSnapshot snapshot) {
+        return of(snapshot.getVersion(), snapshot.getStudents());
+    }
+    
+    static StudentColumns of(long version, List<Student> students) {
+        int[] years = new int[students.size()];
+        String[] courses = new String[students.size()];
+        for (int row = 0; row < years.length; row++) {
+            Student student = students.get(row);
+            years[row] = student.getYear();
+            courses[row] = student.getCourse();
+        }
+        return of(version, years, courses);
+    }
+    
+    /**
+     * Dictionary code a course value per row
+     */
+    static StudentColumns of(long version, int[] years, String[] rowCourses) {
+        int[] codes = new int[rowCourses.length];
+        Map<String, Integer> dictionary = new HashMap<>();
+        List<String> courses = new ArrayList<>();
+        for (int row = 0; row < codes.length; row++) {
+            Integer code = dictionary.get(rowCourses[row]);
+            if (code == null) {
+                code = courses.size();
+                dictionary.put(rowCourses[row], code);
+                courses.add(rowCourses[row]);
+            }
+            codes[row] = code;
+        }
+        return new StudentColumns(version, years, codes, courses.toArray(new String[0]));
+    }
+    
+    /**
+     * Data version the columns were built at
+     */
+    public long getVersion() {
+        return version;
+    }
+    
+    public int size() {
+        return years.length;
+    }
+    
+    /**
+     * Number of students per course, in order of first appearance
+     */
+    public Map<String, Long> countByCourse() {
+        long[] counts = new long[courses.length];
+        for (int code : courseCodes) {
+            counts[code]++;
+        }
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int code = 0; code < courses.length; code++) {
+            result.put(courses[code], counts[code]);
+        }
+        return result;
+    }
+    
+    /**
+     * Number of students per year, in ascending year order
+     */
+    public Map<Integer, Long> countByYear() {
+        Map<Integer, Long> result = new TreeMap<>();
+        if (years.length == 0) {
+            return result;
+        }
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int year : years) {
+            min = Math.min(min, year);
+            max = Math.max(max, year);
+        }
+        if ((long) max - min >= MAX_YEAR_SPAN) {
+            for (int year : years) {
+                result.merge(year, 1L, Long::sum);
+            }
+            return result;
+        }
+        long[] counts = new long[max - min + 1];
+        for (int year : years) {
+            counts[year - min]++;
+        }
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                result.put(min + i, counts[i]);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Stamp identifying the current contents of a data file
+     */
+    static long stampOf(File dataFile) {
+        return dataFile.length() * 31 + dataFile.lastModified();
+    }
+    
+    /**
+     * Write each column next to the data file it was derived from
+     */
+    void write(File dataFile) throws IOException {
+        long stamp = stampOf(dataFile);
+        writeColumn(new File(dataFile.getPath() + YEAR_SUFFIX), stamp, out -> {
+            for (int year : years) {
+                out.writeInt(year);
+            }
+        });
+        writeColumn(new File(dataFile.getPath() + COURSE_SUFFIX), stamp, out -> {
+            out.writeInt(courses.length);
+            for (String course : courses) {
+                out.writeBoolean(course != null);
+                if (course != null) {
+                    out.writeUTF(course);
+                }
+            }
+            for (int code : courseCodes) {
+                out.writeInt(code);
+            }
+        });
+    }
+    
+    private interface ColumnBody {
+        void write(DataOutputStream out) throws IOException;
+    }
+    
+    private void writeColumn(File file, long stamp, ColumnBody body) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(stamp);
+            out.writeInt(years.length);
+            body.write(out);
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    /**
+     * Read the column files of a data file, or null if they are missing or
+     * were written for a different version of the data file
+     */
+    static StudentColumns read(File dataFile, long version) {
+        long stamp = stampOf(dataFile);
+        File yearFile = new File(dataFile.getPath() + YEAR_SUFFIX);
+        File courseFile = new File(dataFile.getPath() + COURSE_SUFFIX);
+        if (!yearFile.exists() || !courseFile.exists()) {
+            return null;
+        }
+        try (DataInputStream yearIn = openColumn(yearFile);
+             DataInputStream courseIn = openColumn(courseFile)) {
+            if (yearIn.readLong() != stamp || courseIn.readLong() != stamp) {
+                return null;
+            }
+            int[] years = new int[yearIn.readInt()];
+            for (int i = 0; i < years.length; i++) {
+                years[i] = yearIn.readInt();
+            }
+            
+            int[] codes = new int[courseIn.readInt()];
+            String[] courses = new String[courseIn.readInt()];
+            for (int i = 0; i < courses.length; i++) {
+                courses[i] = courseIn.readBoolean() ? courseIn.readUTF() : null;
+            }
+            for (int i = 0; i < codes.length; i++) {
+                codes[i] = courseIn.readInt();
+            }
+            if (codes.length != years.length) {
+                return null;
+            }
+            return new StudentColumns(version, years, codes, courses);
+        } catch (IOException e) {
+            System.err.println("Error reading column files: " + e.getMessage());
+            return null;
+        }
+    }
+    
+    private static DataInputStream openColumn(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+            in.close();
+            throw new IOException("Not a student column file: " + file.getName());
+        }
+        return in;
+    }
+}
@@ -0,0 +1,203 @@
+package data;
+
+import model.Student;
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * On-disk formats of the student data file
+ * Detects the format of an existing file and migrates legacy files to the binary format.
+ * New files are written in the format chosen with -Dsis.format (binary or compressed).
+ */
+public enum StudentFileFormat {
+    /** Default Java serialization of a List<Student> (original format) */
+    LEGACY_SERIALIZED,
+    /** Compact record format written by StudentRecordWriter */
+    BINARY,
+    /** Deflate-compressed blocks with CRC32 checksums and a block index (CompressedStudentFile) */
+    COMPRESSED;
+    
+    public static final String PROPERTY = "sis.format";
+    private static final int SERIALIZATION_MAGIC = 0xACED;
+    private static final int MAX_DICTIONARY_SIZE = 4096;
+    
+    /**
+     * Detect the format of a data file, or null if it is missing or unrecognised
+     */
+    public static StudentFileFormat detect(File file) {
+        if (!file.exists() || file.length() < 4) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            int magic = in.readInt();
+            if (magic == StudentRecordWriter.MAGIC) {
+                return BINARY;
+            }
+            if (magic == CompressedStudentFile.MAGIC) {
+                return COMPRESSED;
+            }
+            if ((magic >>> 16) == SERIALIZATION_MAGIC) {
+                return LEGACY_SERIALIZED;
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading " + file.getName() + ": " + e.getMessage());
+        }
+        return null;
+    }
+    
+    /**
+     * Read all students from a file in any supported format
+     */
+    public static List<Student> read(File file) throws IOException {
+        StudentFileFormat format = detect(file);
+        if (format == null) {
+            if (file.exists() && file.length() > 0) {
+                throw new IOException("Unrecognised student file format: " + file.getName());
+            }
+            return new ArrayList<>();
+        }
+        switch (format) {
+            case BINARY:
+                return readBinary(file);
+            case COMPRESSED:
+                return CompressedStudentFile.read(file);
+            default:
+                return readLegacy(file);
+        }
+    }
+    
+    /**
+     * Format for new files selected by the "sis.format" system property, BINARY if unset or unknown
+     */
+    public static StudentFileFormat configured() {
+        String value = System.getProperty(PROPERTY);
+        if (value != null && value.trim().equalsIgnoreCase(COMPRESSED.name())) {
+            return COMPRESSED;
+        }
+        return BINARY;
+    }
+    
+    /**
+     * Write students in the configured format, replacing the file atomically
+     */
+    public static void write(File file, List<Student> students) throws IOException {
+        write(file, students, configured());
+    }
+    
+    /**
+     * Write students in the given format (BINARY or COMPRESSED), replacing the file atomically and durably
+     */
+    public static void write(File file, List<Student> students, StudentFileFormat format) throws IOException {
+        write(file, students, format, true);
+    }
+    
+    /**
+     * Write students in the given format, replacing the file atomically
+     *
+     * @param sync force the new file to disk before it is renamed over the old one, and the
+     *             directory entry after, so a crash leaves either the old or the new file
+     *             complete and callers may drop a journal once this returns
+     */
+    public static void write(File file, List<Student> students, StudentFileFormat format, boolean sync) throws IOException {
+        File tempFile = new File(file.getPath() + ".tmp");
+        if (format == COMPRESSED) {
+            CompressedStudentFile.write(tempFile, students);
+        } else {
+            try (StudentRecordWriter writer = new StudentRecordWriter(new FileOutputStream(tempFile), students.size(),
+                    courseDictionary(students))) {
+                for (Student student : students) {
+                    writer.write(student);
+                }
+            }
+        }
+        if (sync) {
+            try (FileChannel channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+        }
+        Files.move(tempFile.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        if (sync) {
+            syncDirectory(file);
+        }
+    }
+    
+    /**
+     * Force the directory holding the file, which makes a rename in it durable
+     * Some platforms (Windows) cannot open a directory for this; there the rename is left to the OS
+     */
+    static void syncDirectory(File file) {
+        File directory = file.getAbsoluteFile().getParentFile();
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not supported for directories on this platform
+        }
+    }
+    
+    /**
+     * Distinct courses worth dictionary coding: only values that repeat, and
+     * none at all when there are too many for a dictionary to pay off
+     */
+    private static Set<String> courseDictionary(List<Student> students) {
+        Set<String> seen = new HashSet<>();
+        Set<String> repeated = new LinkedHashSet<>();
+        for (Student student : students) {
+            String course = student.getCourse();
+            if (course != null && !seen.add(course) && repeated.add(course) && repeated.size() > MAX_DICTIONARY_SIZE) {
+                return null;
+            }
+        }
+        return repeated;
+    }
+    
+    /**
+     * One-time conversion of a Java-serialized file to the configured format
+     * The original file is kept next to it with a .bak suffix
+     *
+     * @return true if the file was migrated
+     */
+    public static boolean migrateLegacy(File file) throws IOException {
+        if (detect(file) != LEGACY_SERIALIZED) {
+            return false;
+        }
+        List<Student> students = readLegacy(file);
+        Files.copy(file.toPath(), new File(file.getPath() + ".bak").toPath(), StandardCopyOption.REPLACE_EXISTING);
+        StudentFileFormat format = configured();
+        write(file, students, format);
+        System.out.println("Migrated " + students.size() + " students in " + file.getName()
+                + " to " + format.name().toLowerCase() + " format");
+        return true;
+    }
+    
+    private static List<Student> readBinary(File file) throws IOException {
+        try (StudentRecordReader reader = new StudentRecordReader(new FileInputStream(file))) {
+            List<Student> students = new ArrayList<>(reader.getCount());
+            while (reader.hasNext()) {
+                students.add(reader.next());
+            }
+            return students;
+        }
+    }
+    
+    private static List<Student> readLegacy(File file) throws IOException {
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            @SuppressWarnings("unchecked")
+            List<Student> students = (List<Student>) ois.readObject();
+            for (Student student : students) {
+                student.setCourse(StringDictionary.COURSES.intern(student.getCourse()));
+            }
+            return new ArrayList<>(students);
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package data;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Cross-process write lock for a student data file (students.dat.lock)
+ *
+ * Processes sharing students.dat take the exclusive FileChannel lock around
+ * every journal append and snapshot rewrite, so their writes never interleave.
+ * The lock file also holds a generation counter that is bumped whenever the
+ * snapshot is rewritten and the journal truncated, which tells the other
+ * processes that their journal position is no longer valid.
+ *
+ * The lock is reentrant for the owning handler; callers serialize access to it.
+ */
+class StudentFileLock implements Closeable {
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(8);
+    private FileLock lock;
+    private int depth;
+    
+    StudentFileLock(File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+    
+    /**
+     * Block until this process holds the lock
+     */
+    void lock() throws IOException {
+        if (depth++ == 0) {
+            try {
+                lock = channel.lock();
+            } catch (IOException | RuntimeException e) {
+                depth = 0;
+                throw e;
+            }
+        }
+    }
+    
+    void unlock() throws IOException {
+        if (depth > 0 && --depth == 0) {
+            lock.release();
+            lock = null;
+        }
+    }
+    
+    /**
+     * Snapshot generation recorded in the lock file, 0 for a fresh file
+     */
+    long readGeneration() throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) {
+                return 0;
+            }
+        }
+        buffer.flip();
+        return buffer.getLong();
+    }
+    
+    /**
+     * Record that the snapshot was rewritten; call while holding the lock
+     */
+    long nextGeneration() throws IOException {
+        long generation = readGeneration() + 1;
+        buffer.clear();
+        buffer.putLong(generation).flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, buffer.position());
+        }
+        return generation;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        channel.close(); // also releases the lock
+    }
+}
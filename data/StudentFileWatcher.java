@@ -0,0 +1,79 @@
+package data;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the directory of a student data file and runs a callback when one of
+ * the named files is created or modified, e.g. by another process
+ *
+ * Events arriving within SETTLE_MS of each other are coalesced into one
+ * callback, so a burst of appends triggers a single incremental reload.
+ */
+class StudentFileWatcher implements Closeable {
+    private static final long SETTLE_MS = 20;
+    
+    private final WatchService watchService;
+    private final Set<Path> names = new HashSet<>();
+    private final Runnable onChange;
+    
+    StudentFileWatcher(File dataFile, Runnable onChange, String... suffixes) throws IOException {
+        Path path = dataFile.getAbsoluteFile().toPath();
+        for (String suffix : suffixes) {
+            names.add(Paths.get(path.getFileName() + suffix));
+        }
+        this.onChange = onChange;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        path.getParent().register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        
+        Thread thread = new Thread(this::run, "students-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    private void run() {
+        try {
+            while (true) {
+                boolean relevant = drain(watchService.take());
+                WatchKey next;
+                while ((next = watchService.poll(SETTLE_MS, TimeUnit.MILLISECONDS)) != null) {
+                    relevant |= drain(next);
+                }
+                if (relevant) {
+                    onChange.run();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Watcher closed
+        }
+    }
+    
+    private boolean drain(WatchKey key) {
+        boolean relevant = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || names.contains(event.context())) {
+                relevant = true;
+            }
+        }
+        key.reset();
+        return relevant;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+}
@@ -0,0 +1,238 @@
+package data;
+
+import model.Student;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only mutation log for student data
+ * Each change is written as a small framed record: [length][crc32][payload]
+ * A torn or corrupt tail (e.g. after a crash) is detected on replay and truncated
+ */
+class StudentJournal implements Closeable {
+    
+    /**
+     * Kind of change recorded in the journal
+     * PUT is an upsert so replaying an already-applied prefix is harmless
+     */
+    enum Op {
+        PUT, DELETE
+    }
+    
+    /**
+     * A single replayed journal record
+     */
+    static class Entry {
+        final Op op;
+        final String id;
+        final Student student;
+        
+        Entry(Op op, String id, Student student) {
+            this.op = op;
+            this.id = id;
+            this.student = student;
+        }
+    }
+    
+    private final File file;
+    private FileOutputStream fileOut;
+    private DataOutputStream out;
+    private long size;
+    
+    public StudentJournal(File file) throws IOException {
+        this.file = file;
+        open();
+    }
+    
+    private void open() throws IOException {
+        fileOut = new FileOutputStream(file, true);
+        out = new DataOutputStream(new BufferedOutputStream(fileOut));
+        size = file.length();
+    }
+    
+    /**
+     * Record that a student was added or updated
+     */
+    public synchronized void appendPut(Student student) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(128);
+        DataOutputStream payload = new DataOutputStream(buffer);
+        payload.writeByte(Op.PUT.ordinal());
+        writeStudent(payload, student);
+        appendFrame(buffer.toByteArray());
+    }
+    
+    /**
+     * Record that a student was deleted
+     */
+    public synchronized void appendDelete(String id) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(32);
+        DataOutputStream payload = new DataOutputStream(buffer);
+        payload.writeByte(Op.DELETE.ordinal());
+        payload.writeUTF(id);
+        appendFrame(buffer.toByteArray());
+    }
+    
+    private void appendFrame(byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        out.writeInt(payload.length);
+        out.writeInt((int) crc.getValue());
+        out.write(payload);
+        size += 8 + payload.length;
+    }
+    
+    /**
+     * Push buffered records to the operating system
+     */
+    public synchronized void flush() throws IOException {
+        out.flush();
+    }
+    
+    /**
+     * Flush and force records to the storage device
+     * The force happens outside the lock so appends are not blocked by it
+     */
+    public void sync() throws IOException {
+        FileDescriptor fd;
+        synchronized (this) {
+            out.flush();
+            fd = fileOut.getFD();
+        }
+        fd.sync();
+    }
+    
+    /**
+     * Current journal size in bytes
+     */
+    public synchronized long size() {
+        return size;
+    }
+    
+    /**
+     * Move the current journal to the given file and start a fresh, empty one
+     * Used by compaction so new mutations keep flowing while the snapshot is written
+     */
+    public synchronized void rotate(File target) throws IOException {
+        close();
+        Files.move(file.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        open();
+    }
+    
+    /**
+     * Discard all records, e.g. after a full snapshot has been written
+     */
+    public synchronized void truncate() throws IOException {
+        out.flush();
+        fileOut.getChannel().truncate(0);
+        size = 0;
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+    
+    /**
+     * Replay all intact records of a journal file in order
+     * A partially written tail is cut off so later appends start at a record boundary
+     *
+     * @return length of the intact part of the journal
+     */
+    public static long replay(File file, Consumer<Entry> consumer) throws IOException {
+        return replay(file, 0, consumer);
+    }
+    
+    /**
+     * Replay the records that start at the given byte position, e.g. the ones
+     * another process appended since this one last read the journal
+     *
+     * @return position just past the last intact record
+     */
+    public static long replay(File file, long from, Consumer<Entry> consumer) throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+        
+        long validLength = from;
+        try (FileInputStream fileIn = new FileInputStream(file)) {
+            fileIn.getChannel().position(from);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(fileIn));
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length < 0 || validLength + 8 + length > file.length()) {
+                    break;
+                }
+                int expectedCrc = in.readInt();
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if ((int) crc.getValue() != expectedCrc) {
+                    break;
+                }
+                
+                consumer.accept(readEntry(payload));
+                validLength += 8 + length;
+            }
+        } catch (EOFException e) {
+            // Torn record at the end of the file
+        }
+        
+        if (validLength < file.length()) {
+            System.err.println("Truncating damaged journal tail in " + file.getName());
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(validLength);
+            }
+        }
+        return validLength;
+    }
+    
+    private static Entry readEntry(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        Op op = Op.values()[in.readByte()];
+        if (op == Op.DELETE) {
+            return new Entry(op, in.readUTF(), null);
+        }
+        Student student = readStudent(in);
+        return new Entry(op, student.getId(), student);
+    }
+    
+    private static void writeStudent(DataOutputStream out, Student student) throws IOException {
+        writeNullable(out, student.getId());
+        writeNullable(out, student.getName());
+        writeNullable(out, student.getCourse());
+        out.writeInt(student.getYear());
+        writeNullable(out, student.getEmail());
+        writeNullable(out, student.getPhone());
+    }
+    
+    private static Student readStudent(DataInputStream in) throws IOException {
+        String id = readNullable(in);
+        String name = readNullable(in);
+        String course = StringDictionary.COURSES.intern(readNullable(in));
+        int year = in.readInt();
+        String email = readNullable(in);
+        String phone = readNullable(in);
+        return new Student(id, name, course, year, email, phone);
+    }
+    
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+    
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,209 @@
+package data;
+
+import model.Student;
+import java.util.Arrays;
+
+/**
+ * ID -> file offset index of LazyFileDataHandler, with the students materialized so far
+ *
+ * Rows are kept in parallel arrays in insertion order (the display order), and
+ * a linear probing table of row numbers finds the row of an ID, as in
+ * OffHeapDataHandler. Millions of IDs cost a few arrays instead of a map entry
+ * and a boxed offset each. Deleted rows are cleared and squeezed out once they
+ * make up half of the rows, which renumbers the rows that remain.
+ */
+class StudentOffsetTable {
+    static final int NOT_FOUND = -1;
+    private static final int EMPTY = -1;
+    private static final int MIN_CAPACITY = 16;
+    
+    private String[] ids; // null for deleted rows
+    private long[] offsets;
+    private Student[] students; // null until materialized
+    private int rowCount;
+    private int size;
+    private int loadedCount;
+    private int[] table;
+    
+    StudentOffsetTable(int expectedSize) {
+        int capacity = Math.max(MIN_CAPACITY, expectedSize);
+        ids = new String[capacity];
+        offsets = new long[capacity];
+        students = new Student[capacity];
+        table = newTable(tableCapacity(capacity));
+    }
+    
+    private static int tableCapacity(int rows) {
+        return Integer.highestOneBit(Math.max(MIN_CAPACITY, rows) - 1) << 2; // at most half full
+    }
+    
+    private static int[] newTable(int capacity) {
+        int[] table = new int[capacity];
+        Arrays.fill(table, EMPTY);
+        return table;
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    /**
+     * Number of live rows whose student has been materialized
+     */
+    int loadedCount() {
+        return loadedCount;
+    }
+    
+    /**
+     * Upper bound for row numbers; rows below it may be deleted
+     */
+    int rowCount() {
+        return rowCount;
+    }
+    
+    boolean contains(String id) {
+        return find(id) != NOT_FOUND;
+    }
+    
+    /**
+     * Row of the ID, or NOT_FOUND
+     */
+    int find(String id) {
+        if (id == null) {
+            return NOT_FOUND;
+        }
+        int mask = table.length - 1;
+        for (int bucket = spread(id.hashCode()) & mask; table[bucket] != EMPTY; bucket = (bucket + 1) & mask) {
+            if (id.equals(ids[table[bucket]])) {
+                return table[bucket];
+            }
+        }
+        return NOT_FOUND;
+    }
+    
+    /**
+     * Set the offset of an ID, appending a row if it is new, and return its row
+     */
+    int put(String id, long offset) {
+        int row = find(id);
+        if (row != NOT_FOUND) {
+            offsets[row] = offset;
+            return row;
+        }
+        if (rowCount == ids.length) {
+            int capacity = rowCount * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            students = Arrays.copyOf(students, capacity);
+        }
+        row = rowCount++;
+        ids[row] = id;
+        offsets[row] = offset;
+        size++;
+        if (size * 2 > table.length) {
+            rehash(table.length * 2);
+        } else {
+            insertRow(row);
+        }
+        return row;
+    }
+    
+    boolean remove(String id) {
+        int mask = table.length - 1;
+        int bucket = spread(id.hashCode()) & mask;
+        while (table[bucket] != EMPTY && !id.equals(ids[table[bucket]])) {
+            bucket = (bucket + 1) & mask;
+        }
+        if (table[bucket] == EMPTY) {
+            return false;
+        }
+        int row = table[bucket];
+        if (students[row] != null) {
+            loadedCount--;
+        }
+        ids[row] = null;
+        students[row] = null;
+        size--;
+        deleteBucket(bucket);
+        if (rowCount >= MIN_CAPACITY && size * 2 < rowCount) {
+            compactRows();
+        }
+        return true;
+    }
+    
+    String id(int row) {
+        return ids[row];
+    }
+    
+    long offset(int row) {
+        return offsets[row];
+    }
+    
+    Student student(int row) {
+        return students[row];
+    }
+    
+    void setStudent(int row, Student student) {
+        if (students[row] == null) {
+            loadedCount++;
+        }
+        students[row] = student;
+    }
+    
+    /**
+     * Squeeze out deleted rows, keeping the order of the others
+     */
+    private void compactRows() {
+        int live = 0;
+        for (int row = 0; row < rowCount; row++) {
+            if (ids[row] != null) {
+                ids[live] = ids[row];
+                offsets[live] = offsets[row];
+                students[live++] = students[row];
+            }
+        }
+        Arrays.fill(ids, live, rowCount, null);
+        Arrays.fill(students, live, rowCount, null);
+        rowCount = live;
+        rehash(table.length);
+    }
+    
+    private void rehash(int capacity) {
+        table = newTable(capacity);
+        for (int row = 0; row < rowCount; row++) {
+            if (ids[row] != null) {
+                insertRow(row);
+            }
+        }
+    }
+    
+    private void insertRow(int row) {
+        int mask = table.length - 1;
+        int bucket = spread(ids[row].hashCode()) & mask;
+        while (table[bucket] != EMPTY) {
+            bucket = (bucket + 1) & mask;
+        }
+        table[bucket] = row;
+    }
+    
+    /**
+     * Remove a bucket and shift later entries of the probe sequence back into place
+     */
+    private void deleteBucket(int bucket) {
+        int mask = table.length - 1;
+        int hole = bucket;
+        table[hole] = EMPTY;
+        for (int next = (hole + 1) & mask; table[next] != EMPTY; next = (next + 1) & mask) {
+            int home = spread(ids[table[next]].hashCode()) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                table[hole] = table[next];
+                table[next] = EMPTY;
+                hole = next;
+            }
+        }
+    }
+    
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,140 @@
+package data;
+
+import model.Student;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streaming reader for the compact binary student format
+ * Records are decoded one at a time, so callers never need the whole file in memory
+ */
+public class StudentRecordReader implements Closeable {
+    private final DataInputStream in;
+    private final int version;
+    private final int count;
+    private final String[] courses;
+    private int read;
+    
+    public StudentRecordReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(in, 64 * 1024));
+        if (this.in.readInt() != StudentRecordWriter.MAGIC) {
+            throw new IOException("Not a binary student file");
+        }
+        this.version = this.in.readUnsignedByte();
+        if (version > StudentRecordWriter.VERSION) {
+            throw new IOException("Unsupported student file version " + version);
+        }
+        this.count = this.in.readInt();
+        this.courses = version >= 2 ? readDictionary(this.in) : null;
+    }
+    
+    /**
+     * Number of records declared in the header
+     */
+    public int getCount() {
+        return count;
+    }
+    
+    public int getVersion() {
+        return version;
+    }
+    
+    /**
+     * Course dictionary from the header, null for version 1 files
+     */
+    String[] getCourseDictionary() {
+        return courses;
+    }
+    
+    public boolean hasNext() {
+        return read < count;
+    }
+    
+    /**
+     * Decode the next student record
+     */
+    public Student next() throws IOException {
+        if (!hasNext()) {
+            throw new EOFException("All " + count + " records have been read");
+        }
+        read++;
+        return readRecord(in, courses);
+    }
+    
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+    
+    /**
+     * Read a record in the version 1 layout
+     */
+    static Student readRecord(DataInput in) throws IOException {
+        return readRecord(in, null);
+    }
+    
+    /**
+     * @param courses dictionary of the enclosing file, or null for the version 1 layout
+     */
+    static Student readRecord(DataInput in, String[] courses) throws IOException {
+        String id = readString(in);
+        String name = readString(in);
+        String course = courses == null ? readString(in) : readCourse(in, courses);
+        course = StringDictionary.COURSES.intern(course);
+        int year = unZigZag(readVarInt(in));
+        String email = readString(in);
+        String phone = readString(in);
+        return new Student(id, name, course, year, email, phone);
+    }
+    
+    static String[] readDictionary(DataInput in) throws IOException {
+        String[] dictionary = new String[readVarInt(in)];
+        for (int i = 0; i < dictionary.length; i++) {
+            dictionary[i] = StringDictionary.COURSES.intern(readString(in));
+        }
+        return dictionary;
+    }
+    
+    private static String readCourse(DataInput in, String[] courses) throws IOException {
+        int tag = readVarInt(in);
+        if (tag == 0) {
+            return null;
+        }
+        if ((tag & 1) != 0) {
+            int code = tag >>> 1;
+            if (code >= courses.length) {
+                throw new IOException("Course code " + code + " is not in the dictionary");
+            }
+            return courses[code];
+        }
+        byte[] bytes = new byte[(tag >>> 1) - 1];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    static String readString(DataInput in) throws IOException {
+        int length = readVarInt(in);
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length - 1];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+    
+    static int unZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,142 @@
+package data;
+
+import model.Student;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Streaming writer for the compact binary student format
+ *
+ * Layout: [magic "SISB"][version][record count][course dictionary] followed by
+ * one record per student. Each record holds length-prefixed UTF-8 fields (id,
+ * name, course, email, phone) and a varint year. Lengths are stored as
+ * varint(length + 1) so 0 means null.
+ *
+ * Since version 2 the header carries a dictionary of distinct courses
+ * (varint count, then strings) and the course field is a tagged varint:
+ * 0 = null, odd = dictionary code (tag >>> 1), even = inline string of
+ * (tag >>> 1) - 1 bytes. Version 1 files have no dictionary and plain fields.
+ */
+public class StudentRecordWriter implements Closeable {
+    public static final int MAGIC = 0x53495342; // "SISB"
+    public static final int VERSION = 2;
+    
+    private final DataOutputStream out;
+    private final int expectedCount;
+    private final Map<String, Integer> courseCodes = new HashMap<>();
+    private int written;
+    
+    public StudentRecordWriter(OutputStream out, int count) throws IOException {
+        this(out, count, null);
+    }
+    
+    /**
+     * @param courses distinct courses to dictionary code, may be null; other courses are written inline
+     */
+    public StudentRecordWriter(OutputStream out, int count, Collection<String> courses) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024));
+        this.expectedCount = count;
+        this.out.writeInt(MAGIC);
+        this.out.writeByte(VERSION);
+        this.out.writeInt(count);
+        if (courses != null) {
+            for (String course : courses) {
+                if (course != null) {
+                    courseCodes.putIfAbsent(course, courseCodes.size());
+                }
+            }
+        }
+        String[] dictionary = new String[courseCodes.size()];
+        courseCodes.forEach((course, code) -> dictionary[code] = course);
+        writeVarInt(this.out, dictionary.length);
+        for (String course : dictionary) {
+            writeString(this.out, course);
+        }
+    }
+    
+    /**
+     * Append one student record
+     */
+    public void write(Student student) throws IOException {
+        if (written == expectedCount) {
+            throw new IOException("Header declares " + expectedCount + " records");
+        }
+        writeRecord(out, student, courseCodes);
+        written++;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        try {
+            out.flush();
+            if (written != expectedCount) {
+                throw new IOException("Header declares " + expectedCount + " records but " + written + " were written");
+            }
+        } finally {
+            out.close();
+        }
+    }
+    
+    /**
+     * Write a record in the version 1 layout, used where records are stored individually
+     */
+    static void writeRecord(DataOutput out, Student student) throws IOException {
+        writeRecord(out, student, null);
+    }
+    
+    /**
+     * @param courseCodes dictionary of the enclosing file, or null for the version 1 layout
+     */
+    static void writeRecord(DataOutput out, Student student, Map<String, Integer> courseCodes) throws IOException {
+        writeString(out, student.getId());
+        writeString(out, student.getName());
+        if (courseCodes == null) {
+            writeString(out, student.getCourse());
+        } else {
+            writeCourse(out, student.getCourse(), courseCodes);
+        }
+        writeVarInt(out, zigZag(student.getYear()));
+        writeString(out, student.getEmail());
+        writeString(out, student.getPhone());
+    }
+    
+    private static void writeCourse(DataOutput out, String course, Map<String, Integer> courseCodes) throws IOException {
+        if (course == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        Integer code = courseCodes.get(course);
+        if (code != null) {
+            writeVarInt(out, (code << 1) | 1);
+            return;
+        }
+        byte[] bytes = course.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, (bytes.length + 1) << 1);
+        out.write(bytes);
+    }
+    
+    static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length + 1);
+        out.write(bytes);
+    }
+    
+    static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+    
+    static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+}
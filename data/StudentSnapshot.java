@@ -0,0 +1,52 @@
+package data;
+
+import model.Student;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable, versioned view of all students
+ * A snapshot is built at most once per data version and shared by every reader,
+ * so callers can hold on to it (or key caches by its version) without copying
+ */
+public final class StudentSnapshot {
+    private final long version;
+    private final List<Student> students;
+    
+    public StudentSnapshot(long version, List<Student> students) {
+        this(version, students, true);
+    }
+    
+    private StudentSnapshot(long version, List<Student> students, boolean copy) {
+        this.version = version;
+        this.students = Collections.unmodifiableList(copy ? new ArrayList<>(students) : students);
+    }
+    
+    /**
+     * Snapshot over a list the caller guarantees never changes, without copying it
+     * Lets a handler serve a view that materializes students on access
+     */
+    static StudentSnapshot wrap(long version, List<Student> students) {
+        return new StudentSnapshot(version, students, false);
+    }
+    
+    /**
+     * Data version the snapshot was taken at; it changes with every mutation
+     */
+    public long getVersion() {
+        return version;
+    }
+    
+    /**
+     * Unmodifiable list of the students in this snapshot
+     * The Student objects are shared with the handler and other readers; copy one before changing it
+     */
+    public List<Student> getStudents() {
+        return students;
+    }
+    
+    public int size() {
+        return students.size();
+    }
+}
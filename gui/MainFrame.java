@@ -101,6 +101,7 @@ public class MainFrame extends JFrame {
         
         if (confirm == JOptionPane.YES_OPTION) {
             authService.logout();
+            studentService.close();
             dispose();
             showLogin();
         }
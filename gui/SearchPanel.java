@@ -1,8 +1,14 @@
 package gui;
 
 import model.Student;
+import service.SearchField;
+import service.SearchPage;
+import service.StudentQuery;
 import service.StudentService;
+import service.StudentSort;
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.util.List;
@@ -11,11 +17,21 @@ import java.util.List;
  * Panel for searching students by various criteria
  */
 public class SearchPanel extends JPanel {
+    private static final int PAGE_SIZE = 200;
+    private static final int SUGGESTIONS = 8;
+    
     private StudentService studentService;
     private JTable resultTable;
     private DefaultTableModel tableModel;
     private JTextField idField, nameField, courseField, yearField;
-    private JButton searchButton, clearButton;
+    private JButton searchButton, clearButton, moreButton;
+    private JCheckBox fuzzyNameBox;
+    private JLabel statusLabel;
+    private JPopupMenu suggestionPopup;
+    private boolean fillingSuggestion;
+    private int suggestionGeneration;
+    private StudentQuery currentQuery;
+    private String continuationToken;
     
     public SearchPanel(StudentService studentService) {
         this.studentService = studentService;
@@ -40,10 +56,18 @@ public class SearchPanel extends JPanel {
         nameField = new JTextField(20);
         courseField = new JTextField(20);
         yearField = new JTextField(20);
+        fuzzyNameBox = new JCheckBox("Match similar names (ranked by spelling distance)");
         
         // Buttons
         searchButton = new JButton("Search");
         clearButton = new JButton("Clear");
+        moreButton = new JButton("Show More");
+        moreButton.setEnabled(false);
+        statusLabel = new JLabel(" ");
+        
+        // Suggestions must not take the focus from the field being typed in
+        suggestionPopup = new JPopupMenu();
+        suggestionPopup.setFocusable(false);
     }
     
     private void setupLayout() {
@@ -72,6 +96,7 @@ public class SearchPanel extends JPanel {
         addSearchField(searchPanel, gbc, "Search by Name:", nameField, row++);
         addSearchField(searchPanel, gbc, "Search by Course:", courseField, row++);
         addSearchField(searchPanel, gbc, "Search by Year:", yearField, row++);
+        addSearchField(searchPanel, gbc, "", fuzzyNameBox, row++);
         
         // Info label
         gbc.gridx = 0;
@@ -97,9 +122,15 @@ public class SearchPanel extends JPanel {
         JScrollPane scrollPane = new JScrollPane(resultTable);
         scrollPane.setPreferredSize(new Dimension(800, 300));
         
+        // Bottom - Paging
+        JPanel pagingPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        pagingPanel.add(statusLabel);
+        pagingPanel.add(moreButton);
+        
         // Layout
         add(searchPanel, BorderLayout.NORTH);
         add(scrollPane, BorderLayout.CENTER);
+        add(pagingPanel, BorderLayout.SOUTH);
     }
     
     private void addSearchField(JPanel panel, GridBagConstraints gbc, String label, JComponent field, int row) {
@@ -117,15 +148,97 @@ public class SearchPanel extends JPanel {
     private void setupListeners() {
         searchButton.addActionListener(e -> performSearch());
         clearButton.addActionListener(e -> clearSearch());
+        moreButton.addActionListener(e -> showMore());
         
         // Enter key support
         idField.addActionListener(e -> performSearch());
         nameField.addActionListener(e -> performSearch());
         courseField.addActionListener(e -> performSearch());
         yearField.addActionListener(e -> performSearch());
+        
+        // As-you-type suggestions
+        installSuggestions(idField, SearchField.ID);
+        installSuggestions(nameField, SearchField.NAME);
+        installSuggestions(courseField, SearchField.COURSE);
+    }
+    
+    private void installSuggestions(JTextField field, SearchField searchField) {
+        field.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                suggestLater(field, searchField);
+            }
+            
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                suggestLater(field, searchField);
+            }
+            
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+            }
+        });
+    }
+    
+    // The document may not be changed from its own listener, so the popup is built afterwards
+    private void suggestLater(JTextField field, SearchField searchField) {
+        if (!fillingSuggestion) {
+            SwingUtilities.invokeLater(() -> showSuggestions(field, searchField));
+        }
+    }
+    
+    /**
+     * Look suggestions up off the event thread, since the first lookup builds the
+     * completion index over every student; results for older text are dropped
+     */
+    private void showSuggestions(JTextField field, SearchField searchField) {
+        suggestionPopup.setVisible(false);
+        suggestionPopup.removeAll();
+        int generation = ++suggestionGeneration;
+        String prefix = field.getText().trim();
+        if (prefix.isEmpty() || !field.isFocusOwner()) {
+            return;
+        }
+        
+        new SwingWorker<List<String>, Void>() {
+            @Override
+            protected List<String> doInBackground() {
+                return studentService.suggest(searchField, prefix, SUGGESTIONS);
+            }
+            
+            @Override
+            protected void done() {
+                if (generation != suggestionGeneration || !field.isFocusOwner()) {
+                    return; // typed on, searched or left the field meanwhile
+                }
+                try {
+                    showSuggestions(field, get());
+                } catch (Exception e) {
+                    System.err.println("Error loading suggestions: " + e.getMessage());
+                }
+            }
+        }.execute();
+    }
+    
+    private void showSuggestions(JTextField field, List<String> values) {
+        for (String value : values) {
+            JMenuItem item = new JMenuItem(value);
+            item.addActionListener(e -> {
+                fillingSuggestion = true;
+                field.setText(value);
+                fillingSuggestion = false;
+                performSearch();
+            });
+            suggestionPopup.add(item);
+        }
+        if (suggestionPopup.getComponentCount() > 0) {
+            suggestionPopup.show(field, 0, field.getHeight());
+        }
     }
     
     private void performSearch() {
+        suggestionPopup.setVisible(false);
+        suggestionGeneration++; // a pending lookup must not reopen the popup
         String id = idField.getText().trim();
         String name = nameField.getText().trim();
         String course = courseField.getText().trim();
@@ -144,15 +257,19 @@ public class SearchPanel extends JPanel {
             }
         }
         
-        // Convert empty strings to null
-        id = id.isEmpty() ? null : id;
-        name = name.isEmpty() ? null : name;
-        course = course.isEmpty() ? null : course;
-        
-        List<Student> results = studentService.search(id, name, course, year);
-        displayResults(results);
+        // Only the first page is fetched; the rest is loaded with Show More
+        currentQuery = StudentQuery.of(id, name, course, year);
+        tableModel.setRowCount(0);
+        int total;
+        if (fuzzyNameBox.isSelected() && !name.isEmpty()) {
+            total = displayRanked(studentService.searchFuzzy(currentQuery));
+        } else {
+            SearchPage page = studentService.search(currentQuery, StudentSort.ID, 0, PAGE_SIZE);
+            displayPage(page);
+            total = page.getTotalMatches();
+        }
         
-        if (results.isEmpty()) {
+        if (total == 0) {
             JOptionPane.showMessageDialog(this,
                     "No students found matching the search criteria.",
                     "No Results",
@@ -166,10 +283,38 @@ public class SearchPanel extends JPanel {
         courseField.setText("");
         yearField.setText("");
         tableModel.setRowCount(0);
+        currentQuery = null;
+        continuationToken = null;
+        moreButton.setEnabled(false);
+        statusLabel.setText(" ");
     }
     
-    private void displayResults(List<Student> students) {
-        tableModel.setRowCount(0);
+    private void showMore() {
+        if (currentQuery == null || continuationToken == null) {
+            return;
+        }
+        displayPage(studentService.search(currentQuery, StudentSort.ID, continuationToken, PAGE_SIZE));
+    }
+    
+    private void displayPage(SearchPage page) {
+        appendResults(page.getStudents());
+        continuationToken = page.getContinuationToken();
+        moreButton.setEnabled(page.hasMore());
+        statusLabel.setText("Showing " + tableModel.getRowCount() + " of " + page.getTotalMatches());
+    }
+    
+    /**
+     * Show the closest PAGE_SIZE matches of a ranked fuzzy search
+     */
+    private int displayRanked(List<Student> students) {
+        appendResults(students.subList(0, Math.min(PAGE_SIZE, students.size())));
+        continuationToken = null;
+        moreButton.setEnabled(false);
+        statusLabel.setText("Showing " + tableModel.getRowCount() + " closest of " + students.size());
+        return students.size();
+    }
+    
+    private void appendResults(List<Student> students) {
         for (Student student : students) {
             tableModel.addRow(new Object[]{
                 student.getId(),
@@ -1,21 +1,29 @@
 package gui;
 
+import data.StudentChangeEvent;
 import model.Student;
 import service.StudentService;
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Panel for Student CRUD operations
  */
 public class StudentEntryPanel extends JPanel {
+    private static final int RELOAD_THRESHOLD = 100; // events in one batch
+    
     private StudentService studentService;
     private JTable studentTable;
     private DefaultTableModel tableModel;
     private JTextField idField, nameField, courseField, yearField, emailField, phoneField;
     private JButton addButton, updateButton, deleteButton, clearButton;
+    private final Map<String, Integer> rowById = new HashMap<>();
+    private int loadGeneration;
+    private boolean loading;
     
     public StudentEntryPanel(StudentService studentService) {
         this.studentService = studentService;
@@ -23,6 +31,7 @@ public class StudentEntryPanel extends JPanel {
         setupLayout();
         setupListeners();
         loadStudents();
+        studentService.addChangeListener(events -> SwingUtilities.invokeLater(() -> applyChanges(events)));
     }
     
     private void initializeComponents() {
@@ -125,9 +134,15 @@ public class StudentEntryPanel extends JPanel {
         }
         
         Student student = createStudentFromForm();
-        if (studentService.addStudent(student)) {
+        boolean added;
+        try {
+            added = studentService.addStudent(student);
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(this, e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        if (added) {
             JOptionPane.showMessageDialog(this, "Student added successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
-            loadStudents();
             clearForm();
         } else {
             JOptionPane.showMessageDialog(this, "Student with this ID already exists!", "Error", JOptionPane.ERROR_MESSAGE);
@@ -140,9 +155,15 @@ public class StudentEntryPanel extends JPanel {
         }
         
         Student student = createStudentFromForm();
-        if (studentService.updateStudent(student)) {
+        boolean updated;
+        try {
+            updated = studentService.updateStudent(student);
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(this, e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        if (updated) {
             JOptionPane.showMessageDialog(this, "Student updated successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
-            loadStudents();
             clearForm();
         } else {
             JOptionPane.showMessageDialog(this, "Student not found!", "Error", JOptionPane.ERROR_MESSAGE);
@@ -164,7 +185,6 @@ public class StudentEntryPanel extends JPanel {
         if (confirm == JOptionPane.YES_OPTION) {
             if (studentService.deleteStudent(id)) {
                 JOptionPane.showMessageDialog(this, "Student deleted successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
-                loadStudents();
                 clearForm();
             } else {
                 JOptionPane.showMessageDialog(this, "Student not found!", "Error", JOptionPane.ERROR_MESSAGE);
@@ -235,19 +255,115 @@ public class StudentEntryPanel extends JPanel {
         }
     }
     
+    /**
+     * Fetch students off the event thread so the window shows up before a large file is read
+     */
     private void loadStudents() {
+        int generation = ++loadGeneration;
+        loading = true;
+        new SwingWorker<List<Student>, Void>() {
+            @Override
+            protected List<Student> doInBackground() {
+                return studentService.getAllStudents();
+            }
+            
+            @Override
+            protected void done() {
+                if (generation != loadGeneration) {
+                    return; // a newer reload is already on its way
+                }
+                loading = false;
+                try {
+                    showStudents(get());
+                } catch (Exception e) {
+                    JOptionPane.showMessageDialog(StudentEntryPanel.this, "Error loading students: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+    
+    private void showStudents(List<Student> students) {
         tableModel.setRowCount(0);
-        List<Student> students = studentService.getAllStudents();
+        rowById.clear();
         for (Student student : students) {
-            tableModel.addRow(new Object[]{
-                student.getId(),
-                student.getName(),
-                student.getCourse(),
-                student.getYear(),
-                student.getEmail(),
-                student.getPhone()
-            });
+            addRow(toRow(student));
         }
     }
+    
+    /**
+     * Update only the affected rows; a reload, a large batch (or a change racing
+     * the initial load) refreshes the whole table instead
+     */
+    private void applyChanges(List<StudentChangeEvent> events) {
+        if (loading || events.size() > RELOAD_THRESHOLD) {
+            loadStudents();
+            return;
+        }
+        for (StudentChangeEvent event : events) {
+            if (event.getType() == StudentChangeEvent.Type.RELOADED) {
+                loadStudents();
+                return;
+            }
+        }
+        for (StudentChangeEvent event : events) {
+            int row = findRow(event.getId());
+            switch (event.getType()) {
+                case INSERTED:
+                    if (row < 0) {
+                        addRow(toRow(event.getNewStudent()));
+                    }
+                    break;
+                case UPDATED:
+                    Object[] values = toRow(event.getNewStudent());
+                    if (row < 0) {
+                        addRow(values);
+                    } else {
+                        for (int column = 0; column < values.length; column++) {
+                            tableModel.setValueAt(values[column], row, column);
+                        }
+                    }
+                    break;
+                case DELETED:
+                    if (row >= 0) {
+                        removeRow(row);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+    
+    private int findRow(String id) {
+        Integer row = rowById.get(id);
+        return row != null ? row : -1;
+    }
+    
+    private void addRow(Object[] values) {
+        rowById.put((String) values[0], tableModel.getRowCount());
+        tableModel.addRow(values);
+    }
+    
+    /**
+     * Remove a row and renumber the rows below it, which shift up like the model's
+     */
+    private void removeRow(int row) {
+        rowById.remove(tableModel.getValueAt(row, 0));
+        tableModel.removeRow(row);
+        for (int i = row; i < tableModel.getRowCount(); i++) {
+            rowById.put((String) tableModel.getValueAt(i, 0), i);
+        }
+    }
+    
+    private Object[] toRow(Student student) {
+        return new Object[]{
+            student.getId(),
+            student.getName(),
+            student.getCourse(),
+            student.getYear(),
+            student.getEmail(),
+            student.getPhone()
+        };
+    }
 }
 
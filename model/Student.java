@@ -30,6 +30,11 @@ public class Student implements Serializable {
     public Student() {
     }
     
+    // Copy constructor
+    public Student(Student other) {
+        this(other.id, other.name, other.course, other.year, other.email, other.phone);
+    }
+    
     // Getters and Setters (Encapsulation)
     public String getId() {
         return id;
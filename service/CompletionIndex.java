@@ -0,0 +1,278 @@
+package service;
+
+import data.DataHandler;
+import model.Student;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Prefix completion over the ID, name and course fields
+ *
+ * Each field has a radix trie of its distinct values, compared by lower-cased
+ * character. A node does not copy its label: it keeps a reference to one of
+ * the field values passing through it (shared with the student) and the end
+ * of its label in that value; the start is the parent's end. Nodes count the
+ * students holding exactly their value and remember the largest count in
+ * their subtree. A completion walks down the prefix and then does a best-first
+ * search on those maxima, so the N most frequent values come out after
+ * visiting only their paths, independent of how many values share the prefix.
+ * Adds and removes touch a single path and keep the trie compressed.
+ */
+class CompletionIndex extends StudentIndex {
+    private final Map<SearchField, Node> roots = new EnumMap<>(SearchField.class);
+    
+    private static final class Node {
+        String value; // a value with this node's path as prefix; exactly the path while count > 0
+        int end;
+        Node[] children = NO_CHILDREN; // sorted by the first character of their label
+        int count;
+        int best;
+        
+        Node(String value, int end) {
+            this.value = value;
+            this.end = end;
+        }
+        
+        char charAt(int i) {
+            return Character.toLowerCase(value.charAt(i));
+        }
+    }
+    
+    private static final Node[] NO_CHILDREN = new Node[0];
+    
+    CompletionIndex(DataHandler dataHandler) {
+        super(dataHandler);
+    }
+    
+    @Override
+    protected void clear() {
+        roots.clear();
+    }
+    
+    @Override
+    protected void add(Student student) {
+        for (SearchField field : SearchField.values()) {
+            String value = field.valueOf(student);
+            if (value != null && !value.isEmpty()) {
+                insert(roots.computeIfAbsent(field, f -> new Node("", 0)), value);
+            }
+        }
+    }
+    
+    @Override
+    protected void remove(Student student) {
+        for (SearchField field : SearchField.values()) {
+            String value = field.valueOf(student);
+            Node root = roots.get(field);
+            if (value != null && !value.isEmpty() && root != null) {
+                delete(root, value);
+            }
+        }
+    }
+    
+    private static void insert(Node root, String value) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        int i = 0;
+        while (true) {
+            path.add(node);
+            if (i == value.length()) {
+                if (node.count == 0) {
+                    node.value = value;
+                }
+                node.count++;
+                break;
+            }
+            int slot = find(node, Character.toLowerCase(value.charAt(i)), i);
+            if (slot < 0) {
+                Node leaf = new Node(value, value.length());
+                leaf.count = 1;
+                leaf.best = 1;
+                insertChild(node, -slot - 1, leaf);
+                break;
+            }
+            Node child = node.children[slot];
+            int j = i + 1;
+            while (j < child.end && j < value.length() &&
+                   Character.toLowerCase(value.charAt(j)) == child.charAt(j)) {
+                j++;
+            }
+            if (j < child.end) {
+                // The value leaves or ends inside the child's label: split it at j
+                Node split = new Node(j == value.length() ? value : child.value, j);
+                split.children = new Node[]{child};
+                split.best = child.best;
+                node.children[slot] = split;
+                child = split;
+            }
+            node = child;
+            i = j;
+        }
+        for (int k = path.size() - 1; k >= 0; k--) {
+            updateBest(path.get(k));
+        }
+    }
+    
+    private static void delete(Node root, String value) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        int i = 0;
+        while (i < value.length()) {
+            path.add(node);
+            int slot = find(node, Character.toLowerCase(value.charAt(i)), i);
+            if (slot < 0) {
+                return;
+            }
+            node = node.children[slot];
+            if (node.end > value.length() || !samePrefix(node, value, i, node.end)) {
+                return;
+            }
+            i = node.end;
+        }
+        if (node.count == 0) {
+            return;
+        }
+        node.count--;
+        
+        // Drop empty leaves and fold single-child nodes into their child to keep the trie compressed
+        for (int k = path.size() - 1; k >= 0; k--) {
+            Node parent = path.get(k);
+            if (node.count == 0 && node.children.length <= 1) {
+                int slot = find(parent, node.charAt(parent.end), parent.end);
+                if (node.children.length == 0) {
+                    removeChild(parent, slot);
+                } else {
+                    parent.children[slot] = node.children[0];
+                }
+            } else {
+                updateBest(node);
+            }
+            node = parent;
+        }
+        updateBest(root);
+    }
+    
+    private static boolean samePrefix(Node node, String value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (Character.toLowerCase(value.charAt(i)) != node.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static void updateBest(Node node) {
+        int best = node.count;
+        for (Node child : node.children) {
+            best = Math.max(best, child.best);
+        }
+        node.best = best;
+    }
+    
+    /**
+     * Binary search of the children by first label character, as Arrays.binarySearch
+     */
+    private static int find(Node node, char c, int at) {
+        int low = 0;
+        int high = node.children.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char midChar = node.children[mid].charAt(at);
+            if (midChar < c) {
+                low = mid + 1;
+            } else if (midChar > c) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+    
+    private static void insertChild(Node node, int slot, Node child) {
+        Node[] children = new Node[node.children.length + 1];
+        System.arraycopy(node.children, 0, children, 0, slot);
+        children[slot] = child;
+        System.arraycopy(node.children, slot, children, slot + 1, node.children.length - slot);
+        node.children = children;
+    }
+    
+    private static void removeChild(Node node, int slot) {
+        Node[] children = new Node[node.children.length - 1];
+        System.arraycopy(node.children, 0, children, 0, slot);
+        System.arraycopy(node.children, slot + 1, children, slot, children.length - slot);
+        node.children = children.length == 0 ? NO_CHILDREN : children;
+    }
+    
+    /**
+     * Up to limit distinct values of the field starting with the prefix (ignoring case), most frequent first
+     */
+    List<String> complete(SearchField field, String prefix, int limit) {
+        ensureCurrent();
+        synchronized (this) {
+            List<String> completions = new ArrayList<>();
+            Node node = roots.get(field);
+            int i = 0;
+            while (node != null && i < prefix.length()) {
+                int slot = find(node, Character.toLowerCase(prefix.charAt(i)), i);
+                if (slot < 0) {
+                    return completions;
+                }
+                node = node.children[slot];
+                int to = Math.min(node.end, prefix.length());
+                if (!samePrefix(node, prefix, i, to)) {
+                    return completions;
+                }
+                i = to;
+            }
+            if (node == null || limit <= 0) {
+                return completions;
+            }
+            
+            // Nodes are queued by their subtree maximum and values by their own count;
+            // a value is taken once nothing left in the queue can beat it
+            PriorityQueue<Candidate> queue = new PriorityQueue<>();
+            queue.add(new Candidate(node, false));
+            while (!queue.isEmpty() && completions.size() < limit) {
+                Candidate next = queue.poll();
+                if (next.value) {
+                    completions.add(next.node.value);
+                    continue;
+                }
+                if (next.node.count > 0) {
+                    queue.add(new Candidate(next.node, true));
+                }
+                for (Node child : next.node.children) {
+                    queue.add(new Candidate(child, false));
+                }
+            }
+            return completions;
+        }
+    }
+    
+    private static final class Candidate implements Comparable<Candidate> {
+        final Node node;
+        final boolean value;
+        final int priority;
+        
+        Candidate(Node node, boolean value) {
+            this.node = node;
+            this.value = value;
+            this.priority = value ? node.count : node.best;
+        }
+        
+        @Override
+        public int compareTo(Candidate other) {
+            if (priority != other.priority) {
+                return Integer.compare(other.priority, priority);
+            }
+            if (value != other.value) {
+                return value ? -1 : 1; // a value before subtrees that can only tie it
+            }
+            return node.value.compareToIgnoreCase(other.node.value);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package service;
+
+import model.Student;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Base64;
+
+/**
+ * Opaque cursor for paged searches
+ *
+ * Encodes the query it belongs to (as a hash), the sort order, the position
+ * of the next row and the sort key and ID of the last row returned. Decoding
+ * gives a probe student carrying just those fields, which the sort
+ * comparator places exactly where the previous page ended.
+ */
+final class ContinuationToken {
+    private static final int VERSION = 1;
+    
+    final int offset;
+    final Student last;
+    
+    private ContinuationToken(int offset, Student last) {
+        this.offset = offset;
+        this.last = last;
+    }
+    
+    static String encode(StudentQuery query, StudentSort sort, int offset, Student last) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(buffer)) {
+            out.writeByte(VERSION);
+            out.writeInt(query.hashCode());
+            out.writeByte(sort.ordinal());
+            out.writeInt(offset);
+            out.writeUTF(last.getId());
+            switch (sort) {
+                case NAME:
+                    writeNullable(out, last.getName());
+                    break;
+                case COURSE:
+                    writeNullable(out, last.getCourse());
+                    break;
+                case YEAR:
+                    out.writeInt(last.getYear());
+                    break;
+                default:
+                    break;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.toByteArray());
+    }
+    
+    /**
+     * @throws IllegalArgumentException if the token is damaged or was issued for another query or sort order
+     */
+    static ContinuationToken decode(String token, StudentQuery query, StudentSort sort) {
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(token);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid continuation token", e);
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (in.readByte() != VERSION || in.readInt() != query.hashCode() || in.readByte() != sort.ordinal()) {
+                throw new IllegalArgumentException("Continuation token belongs to a different search");
+            }
+            int offset = in.readInt();
+            String id = in.readUTF();
+            String name = null;
+            String course = null;
+            int year = 0;
+            switch (sort) {
+                case NAME:
+                    name = readNullable(in);
+                    break;
+                case COURSE:
+                    course = readNullable(in);
+                    break;
+                case YEAR:
+                    year = in.readInt();
+                    break;
+                default:
+                    break;
+            }
+            return new ContinuationToken(offset, new Student(id, name, course, year, null, null));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid continuation token", e);
+        }
+    }
+    
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+    
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,120 @@
+package service;
+
+import data.DataHandler;
+import model.Student;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Secondary indexes year -> student IDs and normalized course -> student IDs
+ *
+ * A year query is a single map lookup. Substring course queries only scan the
+ * distinct course keys, which are few compared to the number of students.
+ * IDs keep the order in which students were indexed. The exact counts per
+ * year and course also serve as selectivity statistics for the query planner.
+ */
+class CourseYearIndex extends StudentIndex {
+    private final Map<Integer, Set<String>> byYear = new HashMap<>();
+    private final Map<String, Set<String>> byCourse = new HashMap<>();
+    private int size;
+    
+    CourseYearIndex(DataHandler dataHandler) {
+        super(dataHandler);
+    }
+    
+    @Override
+    protected void clear() {
+        byYear.clear();
+        byCourse.clear();
+        size = 0;
+    }
+    
+    @Override
+    protected void add(Student student) {
+        if (byYear.computeIfAbsent(student.getYear(), year -> new LinkedHashSet<>()).add(student.getId())) {
+            size++;
+        }
+        byCourse.computeIfAbsent(normalize(student.getCourse()), course -> new LinkedHashSet<>()).add(student.getId());
+    }
+    
+    @Override
+    protected void remove(Student student) {
+        if (removeId(byYear, student.getYear(), student.getId())) {
+            size--;
+        }
+        removeId(byCourse, normalize(student.getCourse()), student.getId());
+    }
+    
+    private static <K> boolean removeId(Map<K, Set<String>> index, K key, String id) {
+        Set<String> ids = index.get(key);
+        if (ids == null || !ids.remove(id)) {
+            return false;
+        }
+        if (ids.isEmpty()) {
+            index.remove(key);
+        }
+        return true;
+    }
+    
+    /**
+     * Number of indexed students
+     */
+    int size() {
+        ensureCurrent();
+        synchronized (this) {
+            return size;
+        }
+    }
+    
+    int countForYear(int year) {
+        ensureCurrent();
+        synchronized (this) {
+            Set<String> ids = byYear.get(year);
+            return ids != null ? ids.size() : 0;
+        }
+    }
+    
+    List<String> idsForYear(int year) {
+        ensureCurrent();
+        synchronized (this) {
+            Set<String> ids = byYear.get(year);
+            return ids != null ? new ArrayList<>(ids) : new ArrayList<>();
+        }
+    }
+    
+    /**
+     * Number of students whose course contains the given (normalized) text
+     */
+    int countForCourseContaining(String text) {
+        ensureCurrent();
+        synchronized (this) {
+            int count = 0;
+            for (Map.Entry<String, Set<String>> entry : byCourse.entrySet()) {
+                if (entry.getKey().contains(text)) {
+                    count += entry.getValue().size();
+                }
+            }
+            return count;
+        }
+    }
+    
+    /**
+     * IDs of students whose course contains the given (normalized) text
+     */
+    List<String> idsForCourseContaining(String text) {
+        ensureCurrent();
+        synchronized (this) {
+            List<String> ids = new ArrayList<>();
+            for (Map.Entry<String, Set<String>> entry : byCourse.entrySet()) {
+                if (entry.getKey().contains(text)) {
+                    ids.addAll(entry.getValue());
+                }
+            }
+            return ids;
+        }
+    }
+}
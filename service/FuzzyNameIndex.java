@@ -0,0 +1,334 @@
+package service;
+
+import data.DataHandler;
+import model.Student;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Fuzzy and phonetic index over the words of student names
+ *
+ * Names are split into lower-cased words, and each distinct word maps to the
+ * students whose name contains it (by ID, holding the indexed student, so
+ * ranking needs no lookups in the data handler). The distinct words, far
+ * fewer than the students, are also kept in a BK-tree under Levenshtein
+ * distance: a lookup within distance k only descends into children whose edge
+ * distance is within k of the query's, so it computes distances to a small
+ * part of the vocabulary. A second map from Soundex code to words catches
+ * spellings that sound the same but are further apart ("Li" and "Lee"). A word
+ * that disappears stays in the tree until dead words outnumber live ones, and
+ * then the tree is rebuilt. At 1M students the index takes about 140 MB.
+ *
+ * Every word of a query must match some word of the name, within 1 edit for
+ * words of 3-5 characters, 2 edits for longer ones, exactly for shorter ones,
+ * or by Soundex. Matches are ranked by the total edit distance of the query
+ * words to their closest name words; equal distances keep index order.
+ */
+class FuzzyNameIndex extends StudentIndex {
+    private final Map<String, Map<String, Student>> byWord = new HashMap<>();
+    private final Map<String, Set<String>> wordsBySound = new HashMap<>();
+    private Node root;
+    private int nodes;
+    
+    private static final class Node {
+        final String word;
+        Node[] children = new Node[0]; // indexed by distance to word
+        
+        Node(String word) {
+            this.word = word;
+        }
+    }
+    
+    FuzzyNameIndex(DataHandler dataHandler) {
+        super(dataHandler);
+    }
+    
+    @Override
+    protected void clear() {
+        byWord.clear();
+        wordsBySound.clear();
+        root = null;
+        nodes = 0;
+    }
+    
+    @Override
+    protected void add(Student student) {
+        for (String word : words(student.getName())) {
+            Map<String, Student> students = byWord.get(word);
+            if (students == null) {
+                students = new LinkedHashMap<>();
+                byWord.put(word, students);
+                insert(word);
+                String sound = soundex(word);
+                if (sound != null) {
+                    wordsBySound.computeIfAbsent(sound, s -> new HashSet<>()).add(word);
+                }
+            }
+            students.put(student.getId(), student);
+        }
+    }
+    
+    @Override
+    protected void remove(Student student) {
+        for (String word : words(student.getName())) {
+            Map<String, Student> students = byWord.get(word);
+            if (students == null || students.remove(student.getId()) == null || !students.isEmpty()) {
+                continue;
+            }
+            byWord.remove(word);
+            String sound = soundex(word);
+            Set<String> similar = sound != null ? wordsBySound.get(sound) : null;
+            if (similar != null && similar.remove(word) && similar.isEmpty()) {
+                wordsBySound.remove(sound);
+            }
+        }
+        if (nodes > 1024 && nodes > 2 * byWord.size()) {
+            root = null;
+            nodes = 0;
+            for (String word : byWord.keySet()) {
+                insert(word);
+            }
+        }
+    }
+    
+    private void insert(String word) {
+        if (root == null) {
+            root = new Node(word);
+            nodes++;
+            return;
+        }
+        Node node = root;
+        while (true) {
+            int distance = distance(word, node.word);
+            if (distance == 0) {
+                return; // a dead word coming back
+            }
+            if (distance >= node.children.length) {
+                Node[] grown = new Node[distance + 1];
+                System.arraycopy(node.children, 0, grown, 0, node.children.length);
+                node.children = grown;
+            }
+            if (node.children[distance] == null) {
+                node.children[distance] = new Node(word);
+                nodes++;
+                return;
+            }
+            node = node.children[distance];
+        }
+    }
+    
+    /**
+     * Students whose name matches every word of the query, closest first
+     *
+     * @param filter further conditions the students must meet
+     */
+    List<Student> search(String name, Predicate<Student> filter) {
+        List<String> terms = words(name);
+        if (terms.isEmpty()) {
+            return new ArrayList<>();
+        }
+        
+        // Candidates come from the query word with the fewest students, with their distance
+        // for that word read from the index; only the other words are scored against the name
+        String rarest = null;
+        Map<String, Integer> rarestWords = null;
+        Map<String, Ranked> candidates = new LinkedHashMap<>();
+        ensureCurrent();
+        synchronized (this) {
+            int fewest = Integer.MAX_VALUE;
+            for (String term : terms) {
+                Map<String, Integer> similar = similarWords(term);
+                int count = 0;
+                for (String word : similar.keySet()) {
+                    count += byWord.get(word).size();
+                }
+                if (count < fewest) {
+                    fewest = count;
+                    rarest = term;
+                    rarestWords = similar;
+                }
+            }
+            for (Map.Entry<String, Integer> similar : rarestWords.entrySet()) {
+                int distance = similar.getValue();
+                for (Student student : byWord.get(similar.getKey()).values()) {
+                    Ranked best = candidates.get(student.getId());
+                    if (best == null || distance < best.score) {
+                        candidates.put(student.getId(), new Ranked(student, distance));
+                    }
+                }
+            }
+        }
+        
+        // Scores are small, so ranking is a bucket per score rather than a comparison sort
+        List<String> others = new ArrayList<>(terms);
+        others.remove(rarest);
+        List<List<Student>> byScore = new ArrayList<>();
+        int matches = 0;
+        for (Ranked candidate : candidates.values()) {
+            if (!filter.test(candidate.student)) {
+                continue;
+            }
+            int score = others.isEmpty() ? 0 : score(others, words(candidate.student.getName()));
+            if (score < 0) {
+                continue;
+            }
+            score += candidate.score;
+            while (byScore.size() <= score) {
+                byScore.add(new ArrayList<>());
+            }
+            byScore.get(score).add(candidate.student);
+            matches++;
+        }
+        
+        List<Student> students = new ArrayList<>(matches);
+        for (List<Student> bucket : byScore) {
+            students.addAll(bucket);
+        }
+        return students;
+    }
+    
+    private static final class Ranked {
+        final Student student;
+        final int score;
+        
+        Ranked(Student student, int score) {
+            this.student = student;
+            this.score = score;
+        }
+    }
+    
+    /**
+     * Live words within the allowed distance of the term or with the same Soundex code, with their distance
+     */
+    private Map<String, Integer> similarWords(String term) {
+        Map<String, Integer> similar = new HashMap<>();
+        int limit = maxDistance(term);
+        List<Node> pending = new ArrayList<>();
+        if (root != null) {
+            pending.add(root);
+        }
+        while (!pending.isEmpty()) {
+            Node node = pending.remove(pending.size() - 1);
+            int distance = distance(term, node.word);
+            if (distance <= limit && byWord.containsKey(node.word)) {
+                similar.put(node.word, distance);
+            }
+            for (int d = Math.max(1, distance - limit); d <= distance + limit && d < node.children.length; d++) {
+                if (node.children[d] != null) {
+                    pending.add(node.children[d]);
+                }
+            }
+        }
+        String sound = soundex(term);
+        if (sound != null && wordsBySound.containsKey(sound)) {
+            for (String word : wordsBySound.get(sound)) {
+                similar.computeIfAbsent(word, w -> distance(term, w));
+            }
+        }
+        return similar;
+    }
+    
+    /**
+     * Total distance from each term to its closest word, or -1 if some term matches no word
+     */
+    private static int score(List<String> terms, List<String> words) {
+        int total = 0;
+        for (String term : terms) {
+            int best = -1;
+            for (String word : words) {
+                int distance = distance(term, word);
+                if ((distance <= maxDistance(term) || soundsAlike(term, word)) && (best < 0 || distance < best)) {
+                    best = distance;
+                }
+            }
+            if (best < 0) {
+                return -1;
+            }
+            total += best;
+        }
+        return total;
+    }
+    
+    private static int maxDistance(String term) {
+        return term.length() <= 2 ? 0 : term.length() <= 5 ? 1 : 2;
+    }
+    
+    private static boolean soundsAlike(String term, String word) {
+        String sound = soundex(term);
+        return sound != null && sound.equals(soundex(word));
+    }
+    
+    /**
+     * Lower-cased words of a name, split on anything that is not a letter or digit
+     */
+    static List<String> words(String name) {
+        List<String> words = new ArrayList<>();
+        String text = normalize(name);
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean part = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (part && start < 0) {
+                start = i;
+            } else if (!part && start >= 0) {
+                words.add(text.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+    
+    static int distance(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            char c = a.charAt(i - 1);
+            for (int j = 1; j <= b.length(); j++) {
+                int substitute = previous[j - 1] + (c == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitute, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+    
+    /**
+     * American Soundex code of a lower-case word, or null if it does not start with a letter a-z
+     */
+    static String soundex(String word) {
+        if (word.isEmpty() || word.charAt(0) < 'a' || word.charAt(0) > 'z') {
+            return null;
+        }
+        final String codes = "01230120022455012623010202"; // a..z
+        StringBuilder sound = new StringBuilder(4).append(Character.toUpperCase(word.charAt(0)));
+        char last = codes.charAt(word.charAt(0) - 'a');
+        for (int i = 1; i < word.length() && sound.length() < 4; i++) {
+            char c = word.charAt(i);
+            if (c < 'a' || c > 'z') {
+                continue;
+            }
+            char code = codes.charAt(c - 'a');
+            if (code != '0' && code != last) {
+                sound.append(code);
+            }
+            if (c != 'h' && c != 'w') {
+                last = code; // h and w do not separate equal codes, vowels do
+            }
+        }
+        while (sound.length() < 4) {
+            sound.append('0');
+        }
+        return sound.toString();
+    }
+}
@@ -0,0 +1,128 @@
+package service;
+
+import model.Student;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Predicate;
+
+/**
+ * Execution plan for a StudentQuery, as chosen by the query planner
+ *
+ * A plan reads its candidates through one access path (an index or a full
+ * scan) and checks them against the remaining filters in the order given,
+ * cheapest and most selective first. explain() describes the plan.
+ */
+public final class QueryPlan {
+    
+    /**
+     * Where the candidate students come from
+     */
+    public enum Access {
+        SCAN("full scan"),
+        YEAR_INDEX("year index"),
+        COURSE_INDEX("course index"),
+        TRIGRAM_INDEX("trigram index");
+        
+        private final String description;
+        
+        Access(String description) {
+            this.description = description;
+        }
+        
+        @Override
+        public String toString() {
+            return description;
+        }
+    }
+    
+    /**
+     * One compiled condition with the planner's estimates
+     */
+    static final class Filter {
+        final String description;
+        final double selectivity;
+        final int cost;
+        final Predicate<Student> predicate;
+        
+        Filter(String description, double selectivity, int cost, Predicate<Student> predicate) {
+            this.description = description;
+            this.selectivity = selectivity;
+            this.cost = cost;
+            this.predicate = predicate;
+        }
+        
+        /**
+         * Expected cost per student that passes, cost / (1 - selectivity);
+         * running filters in ascending rank order minimizes the total work
+         */
+        double rank() {
+            return selectivity >= 1 ? Double.MAX_VALUE : cost / (1 - selectivity);
+        }
+    }
+    
+    private final StudentQuery query;
+    private final Access access;
+    private final int estimatedRows;
+    private final int totalRows;
+    private final List<Filter> filters;
+    
+    QueryPlan(StudentQuery query, Access access, int estimatedRows, int totalRows, List<Filter> filters) {
+        this.query = query;
+        this.access = access;
+        this.estimatedRows = estimatedRows;
+        this.totalRows = totalRows;
+        this.filters = Collections.unmodifiableList(filters);
+    }
+    
+    public StudentQuery getQuery() {
+        return query;
+    }
+    
+    public Access getAccess() {
+        return access;
+    }
+    
+    /**
+     * Number of candidates the access path is expected to produce (an upper bound for the trigram index)
+     */
+    public int getEstimatedRows() {
+        return estimatedRows;
+    }
+    
+    List<Filter> getFilters() {
+        return filters;
+    }
+    
+    /**
+     * True if a student passes every filter of the plan
+     */
+    boolean matches(Student student) {
+        for (Filter filter : filters) {
+            if (!filter.predicate.test(student)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Human-readable description of the access path and the filter order
+     */
+    public String explain() {
+        StringBuilder text = new StringBuilder();
+        text.append("Plan for ").append(query).append('\n');
+        text.append("  access: ").append(access)
+            .append(", ~").append(estimatedRows).append(" of ").append(totalRows).append(" students\n");
+        for (Filter filter : filters) {
+            text.append(String.format(Locale.ROOT, "  filter: %s (selectivity %.4f, cost %d)%n",
+                    filter.description, filter.selectivity, filter.cost));
+        }
+        return text.toString();
+    }
+    
+    @Override
+    public String toString() {
+        return explain();
+    }
+}
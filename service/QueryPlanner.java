@@ -0,0 +1,219 @@
+package service;
+
+import data.DataHandler;
+import model.Student;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Turns a StudentQuery into a QueryPlan and runs it
+ *
+ * Selectivities come from the indexes: exact counts for year and course, and
+ * the shortest trigram posting list as an upper bound for ID and name texts
+ * (texts under three characters are assumed to match half of the students).
+ * The access path is the index with the fewest expected candidates; since
+ * every candidate costs a lookup in the data handler, a full scan is used
+ * when that is still more than 1/SCAN_FRACTION of all students. Every
+ * candidate is checked against all filters, including the one its index
+ * answered, since a student may change between reading the index and looking
+ * it up. Filters are ordered by cost / (1 - selectivity) with relative
+ * per-student costs of 1 for the year comparison and 2-3 for the substring
+ * matches on the shorter and longer fields.
+ */
+class QueryPlanner {
+    private static final int SCAN_FRACTION = 8;
+    private static final double UNKNOWN_SELECTIVITY = 0.5;
+    
+    private final DataHandler dataHandler;
+    private final CourseYearIndex courseYearIndex;
+    private final TrigramIndex trigramIndex;
+    
+    QueryPlanner(DataHandler dataHandler, CourseYearIndex courseYearIndex, TrigramIndex trigramIndex) {
+        this.dataHandler = dataHandler;
+        this.courseYearIndex = courseYearIndex;
+        this.trigramIndex = trigramIndex;
+    }
+    
+    QueryPlan plan(StudentQuery query) {
+        int total = courseYearIndex.size();
+        List<QueryPlan.Filter> filters = new ArrayList<>();
+        QueryPlan.Access access = QueryPlan.Access.SCAN;
+        int rows = total;
+        
+        if (query.getYear() != null) {
+            int year = query.getYear();
+            int count = courseYearIndex.countForYear(year);
+            filters.add(new QueryPlan.Filter("year = " + year, fraction(count, total), 1,
+                    s -> s.getYear() == year));
+            if (count < rows) {
+                access = QueryPlan.Access.YEAR_INDEX;
+                rows = count;
+            }
+        }
+        if (query.getCourse() != null) {
+            int count = courseYearIndex.countForCourseContaining(query.getCourse());
+            filters.add(contains("course", query.getCourse(), fraction(count, total), 2, Student::getCourse));
+            if (count < rows) {
+                access = QueryPlan.Access.COURSE_INDEX;
+                rows = count;
+            }
+        }
+        if (query.getId() != null) {
+            filters.add(contains("id", query.getId(), textSelectivity(TrigramIndex.Field.ID, query.getId(), total), 2,
+                    Student::getId));
+        }
+        if (query.getName() != null) {
+            filters.add(contains("name", query.getName(), textSelectivity(TrigramIndex.Field.NAME, query.getName(), total), 3,
+                    Student::getName));
+        }
+        
+        int candidates = trigramIndex.estimate(trigramTerms(query));
+        if (candidates >= 0 && candidates < rows) {
+            access = QueryPlan.Access.TRIGRAM_INDEX;
+            rows = candidates;
+        }
+        if (access != QueryPlan.Access.SCAN && (long) rows * SCAN_FRACTION > total) {
+            access = QueryPlan.Access.SCAN;
+            rows = total;
+        }
+        
+        filters.sort(Comparator.comparingDouble(QueryPlan.Filter::rank));
+        return new QueryPlan(query, access, rows, total, filters);
+    }
+    
+    List<Student> execute(QueryPlan plan) {
+        List<String> ids = candidateIds(plan);
+        if (ids == null) {
+            return dataHandler.search(plan::matches);
+        }
+        
+        List<Student> students = new ArrayList<>();
+        for (Student student : dataHandler.findStudentsByIds(ids)) { // skips IDs deleted since the index was read
+            if (plan.matches(student)) {
+                students.add(student);
+            }
+        }
+        return students;
+    }
+    
+    /**
+     * Lazily evaluated matches: students are checked only as the stream is consumed
+     * Index candidates are looked up together, so they come in the same order as a scan
+     */
+    Stream<Student> stream(QueryPlan plan) {
+        List<String> ids = candidateIds(plan);
+        if (ids == null) {
+            return dataHandler.getSnapshot().getStudents().stream().filter(plan::matches);
+        }
+        return dataHandler.findStudentsByIds(ids).stream().filter(plan::matches);
+    }
+    
+    /**
+     * Sorted page of the matches after the given token (if any), skipping offset of them
+     * Only the first offset + limit matches in sort order are kept, in a bounded max-heap,
+     * so a page costs O(n log(offset + limit)) instead of a full sort
+     */
+    SearchPage page(QueryPlan plan, StudentSort sort, ContinuationToken after, int offset, int limit) {
+        Comparator<Student> order = sort.comparator();
+        int keep = (int) Math.min(Integer.MAX_VALUE - 1, (long) offset + limit);
+        PriorityQueue<Student> heap = new PriorityQueue<>(Math.min(keep, 1024) + 1, order.reversed());
+        int total = 0;
+        int remaining = 0;
+        Iterator<Student> matches = stream(plan).iterator();
+        while (matches.hasNext()) {
+            Student student = matches.next();
+            total++;
+            if (after != null && order.compare(student, after.last) <= 0) {
+                continue;
+            }
+            remaining++;
+            if (heap.size() < keep) {
+                heap.add(student);
+            } else if (order.compare(student, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(student);
+            }
+        }
+        
+        List<Student> top = new ArrayList<>(heap);
+        top.sort(order);
+        List<Student> students = offset < top.size() ? top.subList(offset, top.size()) : new ArrayList<>();
+        int start = (after != null ? after.offset : 0) + offset;
+        String token = null;
+        if (!students.isEmpty() && remaining > offset + students.size()) {
+            token = ContinuationToken.encode(plan.getQuery(), sort, start + students.size(),
+                    students.get(students.size() - 1));
+        }
+        return new SearchPage(new ArrayList<>(students), start, total, token);
+    }
+    
+    /**
+     * Candidate IDs from the plan's index, or null for a full scan
+     */
+    private List<String> candidateIds(QueryPlan plan) {
+        StudentQuery query = plan.getQuery();
+        switch (plan.getAccess()) {
+            case YEAR_INDEX:
+                return courseYearIndex.idsForYear(query.getYear());
+            case COURSE_INDEX:
+                return courseYearIndex.idsForCourseContaining(query.getCourse());
+            case TRIGRAM_INDEX:
+                return trigramIndex.candidates(trigramTerms(query));
+            default:
+                return null;
+        }
+    }
+    
+    private static Map<TrigramIndex.Field, String> trigramTerms(StudentQuery query) {
+        Map<TrigramIndex.Field, String> terms = new EnumMap<>(TrigramIndex.Field.class);
+        terms.put(TrigramIndex.Field.ID, query.getId());
+        terms.put(TrigramIndex.Field.NAME, query.getName());
+        terms.put(TrigramIndex.Field.COURSE, query.getCourse());
+        return terms;
+    }
+    
+    private double textSelectivity(TrigramIndex.Field field, String text, int total) {
+        int bound = trigramIndex.estimate(Collections.singletonMap(field, text));
+        return bound < 0 ? UNKNOWN_SELECTIVITY : fraction(bound, total);
+    }
+    
+    private static double fraction(int count, int total) {
+        return total == 0 ? 0 : Math.min(1.0, (double) count / total);
+    }
+    
+    /**
+     * Case-insensitive substring filter; the text is already lower-cased, so only
+     * the field is folded, character by character and without copying it
+     */
+    private static QueryPlan.Filter contains(String field, String text, double selectivity, int cost,
+                                             Function<Student, String> getter) {
+        return new QueryPlan.Filter(field + " contains \"" + text + "\"", selectivity, cost,
+                s -> containsIgnoreCase(getter.apply(s), text));
+    }
+    
+    static boolean containsIgnoreCase(String value, String lowerText) {
+        if (value == null) {
+            return false;
+        }
+        int length = lowerText.length();
+        if (length == 0) {
+            return true;
+        }
+        char first = lowerText.charAt(0);
+        for (int i = 0, last = value.length() - length; i <= last; i++) {
+            if (Character.toLowerCase(value.charAt(i)) == first &&
+                value.regionMatches(true, i + 1, lowerText, 1, length - 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
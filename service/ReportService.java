@@ -1,9 +1,9 @@
 package service;
 
+import data.StudentColumns;
 import model.Student;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 /**
  * Report Service for generating various reports
@@ -117,20 +117,20 @@ public class ReportService {
     
     /**
      * Generate statistics report
+     * Counts come from the year and course columns, so no Student objects are scanned
      */
     public String generateStatisticsReport() {
-        List<Student> students = studentService.getAllStudents();
+        StudentColumns columns = studentService.getColumns();
         StringBuilder report = new StringBuilder();
         
         report.append("=".repeat(80)).append("\n");
         report.append("STATISTICS REPORT\n");
         report.append("=".repeat(80)).append("\n");
         
-        report.append("Total Students: ").append(students.size()).append("\n\n");
+        report.append("Total Students: ").append(columns.size()).append("\n\n");
         
         // Count by course
-        Map<String, Long> byCourse = students.stream()
-                .collect(Collectors.groupingBy(Student::getCourse, Collectors.counting()));
+        Map<String, Long> byCourse = columns.countByCourse();
         
         report.append("Students by Course:\n");
         report.append("-".repeat(40)).append("\n");
@@ -138,8 +138,7 @@ public class ReportService {
             report.append(String.format("%-30s: %d\n", course, count)));
         
         // Count by year
-        Map<Integer, Long> byYear = students.stream()
-                .collect(Collectors.groupingBy(Student::getYear, Collectors.counting()));
+        Map<Integer, Long> byYear = columns.countByYear();
         
         report.append("\nStudents by Year:\n");
         report.append("-".repeat(40)).append("\n");
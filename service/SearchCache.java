@@ -0,0 +1,147 @@
+package service;
+
+import data.DataHandler;
+import data.StudentChangeEvent;
+import data.StudentChangeListener;
+import model.Student;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * LRU cache of search results, keyed by the normalized query
+ *
+ * Entries are dropped precisely: a change only invalidates the queries that
+ * match the student before or after it, so repeated course and year searches
+ * stay cached while unrelated students are edited. A reload, or a batch too
+ * large to check entry by entry, clears the whole cache. A result computed
+ * while changes arrived is not stored, since it may predate them.
+ *
+ * The cache is bounded both by entry count and by an estimate of the memory
+ * its result lists hold (the students themselves are shared with the data
+ * handler); the least recently used entries are evicted first.
+ */
+class SearchCache implements StudentChangeListener {
+    static final String ENTRIES_PROPERTY = "sis.cache.entries";
+    static final String MEGABYTES_PROPERTY = "sis.cache.mb";
+    private static final int ENTRY_BYTES = 160;
+    private static final int REFERENCE_BYTES = 4;
+    private static final int MAX_EVENT_CHECKS = 1024;
+    
+    private final int maxEntries;
+    private final long maxBytes;
+    private final LinkedHashMap<StudentQuery, List<Student>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long changes;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+    
+    SearchCache(DataHandler dataHandler) {
+        this(dataHandler, Integer.getInteger(ENTRIES_PROPERTY, 256),
+             Long.getLong(MEGABYTES_PROPERTY, 16) * 1024 * 1024);
+    }
+    
+    SearchCache(DataHandler dataHandler, int maxEntries, long maxBytes) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        dataHandler.addChangeListener(this);
+    }
+    
+    /**
+     * Copy of the cached result, or null on a miss
+     */
+    synchronized List<Student> get(StudentQuery query) {
+        List<Student> students = entries.get(query);
+        if (students == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return new ArrayList<>(students);
+    }
+    
+    /**
+     * Marker to pass to put; take it before running the search
+     */
+    synchronized long stamp() {
+        return changes;
+    }
+    
+    /**
+     * Store a result unless changes arrived since the stamp was taken or it is too large to cache
+     */
+    synchronized void put(StudentQuery query, long stamp, List<Student> students) {
+        long size = estimate(students);
+        if (stamp != changes || maxEntries <= 0 || size > maxBytes) {
+            return;
+        }
+        List<Student> previous = entries.put(query, new ArrayList<>(students));
+        if (previous != null) {
+            bytes -= estimate(previous);
+        }
+        bytes += size;
+        
+        Iterator<List<Student>> eldest = entries.values().iterator();
+        while (entries.size() > maxEntries || bytes > maxBytes) {
+            bytes -= estimate(eldest.next());
+            eldest.remove();
+            evictions++;
+        }
+    }
+    
+    @Override
+    public synchronized void onChanges(List<StudentChangeEvent> events) {
+        changes++;
+        if (entries.isEmpty()) {
+            return;
+        }
+        if (events.size() > MAX_EVENT_CHECKS) {
+            clear();
+            return;
+        }
+        for (StudentChangeEvent event : events) {
+            if (event.getType() == StudentChangeEvent.Type.RELOADED) {
+                clear();
+                return;
+            }
+        }
+        
+        Iterator<Map.Entry<StudentQuery, List<Student>>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<StudentQuery, List<Student>> entry = it.next();
+            if (affects(events, entry.getKey())) {
+                bytes -= estimate(entry.getValue());
+                it.remove();
+                invalidations++;
+            }
+        }
+    }
+    
+    synchronized SearchCacheStats stats() {
+        return new SearchCacheStats(hits, misses, evictions, invalidations, entries.size(), bytes);
+    }
+    
+    private void clear() {
+        invalidations += entries.size();
+        entries.clear();
+        bytes = 0;
+    }
+    
+    private static boolean affects(List<StudentChangeEvent> events, StudentQuery query) {
+        for (StudentChangeEvent event : events) {
+            if ((event.getOldStudent() != null && query.matches(event.getOldStudent())) ||
+                (event.getNewStudent() != null && query.matches(event.getNewStudent()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static long estimate(List<Student> students) {
+        return ENTRY_BYTES + (long) students.size() * REFERENCE_BYTES;
+    }
+}
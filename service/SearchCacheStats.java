@@ -0,0 +1,72 @@
+package service;
+
+/**
+ * Counters of the search result cache, for tuning its size
+ */
+public final class SearchCacheStats {
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long invalidations;
+    private final int entries;
+    private final long estimatedBytes;
+    
+    SearchCacheStats(long hits, long misses, long evictions, long invalidations, int entries, long estimatedBytes) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.invalidations = invalidations;
+        this.entries = entries;
+        this.estimatedBytes = estimatedBytes;
+    }
+    
+    public long getHits() {
+        return hits;
+    }
+    
+    public long getMisses() {
+        return misses;
+    }
+    
+    /**
+     * Fraction of lookups answered from the cache, 0 if there were none
+     */
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+    
+    /**
+     * Entries dropped to stay within the entry or memory limit
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+    
+    /**
+     * Entries dropped because a change could have altered their result
+     */
+    public long getInvalidations() {
+        return invalidations;
+    }
+    
+    public int getEntries() {
+        return entries;
+    }
+    
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+    
+    @Override
+    public String toString() {
+        return "SearchCacheStats{" +
+                "hits=" + hits +
+                ", misses=" + misses +
+                ", evictions=" + evictions +
+                ", invalidations=" + invalidations +
+                ", entries=" + entries +
+                ", estimatedBytes=" + estimatedBytes +
+                '}';
+    }
+}
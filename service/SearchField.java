@@ -0,0 +1,23 @@
+package service;
+
+import model.Student;
+import java.util.function.Function;
+
+/**
+ * Text fields that can be searched and completed
+ */
+public enum SearchField {
+    ID(Student::getId),
+    NAME(Student::getName),
+    COURSE(Student::getCourse);
+    
+    private final Function<Student, String> getter;
+    
+    SearchField(Function<Student, String> getter) {
+        this.getter = getter;
+    }
+    
+    String valueOf(Student student) {
+        return getter.apply(student);
+    }
+}
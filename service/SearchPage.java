@@ -0,0 +1,56 @@
+package service;
+
+import model.Student;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of sorted search results
+ *
+ * Pass the continuation token to StudentService.search to get the next page.
+ * The token holds the sort key of the last row rather than an offset, so the
+ * next page starts right after that row even if students were added or
+ * removed in between.
+ */
+public final class SearchPage {
+    private final List<Student> students;
+    private final int offset;
+    private final int totalMatches;
+    private final String continuationToken;
+    
+    SearchPage(List<Student> students, int offset, int totalMatches, String continuationToken) {
+        this.students = Collections.unmodifiableList(students);
+        this.offset = offset;
+        this.totalMatches = totalMatches;
+        this.continuationToken = continuationToken;
+    }
+    
+    public List<Student> getStudents() {
+        return students;
+    }
+    
+    /**
+     * Position of the first student of this page among all matches
+     */
+    public int getOffset() {
+        return offset;
+    }
+    
+    /**
+     * Number of students matching the query, on all pages
+     */
+    public int getTotalMatches() {
+        return totalMatches;
+    }
+    
+    public boolean hasMore() {
+        return continuationToken != null;
+    }
+    
+    /**
+     * Token for the next page, or null if this is the last one
+     */
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+}
@@ -0,0 +1,99 @@
+package service;
+
+import data.DataHandler;
+import data.StudentChangeEvent;
+import data.StudentChangeListener;
+import model.Student;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Base class for in-memory search indexes kept in step with a DataHandler
+ *
+ * Inserts, updates and deletes arrive through the change feed and are applied
+ * incrementally. A reload only marks the index stale; the next query rebuilds
+ * it from a snapshot. The snapshot is read without holding the index lock,
+ * because the handler may be publishing to this index at the same time, and
+ * the rebuild is retried if further changes arrived while it was read.
+ *
+ * Subclasses implement clear, add and remove (which must tolerate repeats) and
+ * guard their queries with the index monitor after calling ensureCurrent.
+ */
+abstract class StudentIndex implements StudentChangeListener {
+    private final DataHandler dataHandler;
+    private boolean stale = true;
+    private long changes;
+    
+    StudentIndex(DataHandler dataHandler) {
+        this.dataHandler = dataHandler;
+        dataHandler.addChangeListener(this);
+    }
+    
+    protected DataHandler getDataHandler() {
+        return dataHandler;
+    }
+    
+    /**
+     * Lower-cased form of a field or query term; null is treated as empty
+     */
+    static String normalize(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
+    }
+    
+    @Override
+    public synchronized void onChanges(List<StudentChangeEvent> events) {
+        changes++;
+        if (stale) {
+            return; // the next rebuild reads a snapshot that includes these changes
+        }
+        for (StudentChangeEvent event : events) {
+            switch (event.getType()) {
+                case INSERTED:
+                    add(event.getNewStudent());
+                    break;
+                case UPDATED:
+                    remove(event.getOldStudent());
+                    add(event.getNewStudent());
+                    break;
+                case DELETED:
+                    remove(event.getOldStudent());
+                    break;
+                default:
+                    stale = true;
+                    return;
+            }
+        }
+    }
+    
+    /**
+     * Rebuild the index if a reload made it stale; must not be called while holding the index monitor
+     */
+    protected void ensureCurrent() {
+        while (true) {
+            long seen;
+            synchronized (this) {
+                if (!stale) {
+                    return;
+                }
+                seen = changes;
+            }
+            List<Student> students = dataHandler.getSnapshot().getStudents();
+            synchronized (this) {
+                if (changes == seen) {
+                    clear();
+                    for (Student student : students) {
+                        add(student);
+                    }
+                    stale = false;
+                    return;
+                }
+            }
+        }
+    }
+    
+    protected abstract void clear();
+    
+    protected abstract void add(Student student);
+    
+    protected abstract void remove(Student student);
+}
@@ -0,0 +1,92 @@
+package service;
+
+import model.Student;
+import java.util.Objects;
+
+/**
+ * Search criteria, normalized once when the query is created
+ *
+ * Text criteria match as case-insensitive substrings and are stored lower-cased;
+ * empty text and a null year mean "no condition". Equal criteria give equal queries.
+ */
+public final class StudentQuery {
+    private final String id;
+    private final String name;
+    private final String course;
+    private final Integer year;
+    
+    private StudentQuery(String id, String name, String course, Integer year) {
+        this.id = id;
+        this.name = name;
+        this.course = course;
+        this.year = year;
+    }
+    
+    public static StudentQuery of(String id, String name, String course, Integer year) {
+        return new StudentQuery(normalize(id), normalize(name), normalize(course), year);
+    }
+    
+    private static String normalize(String text) {
+        return text == null || text.isEmpty() ? null : StudentIndex.normalize(text);
+    }
+    
+    /**
+     * Lower-cased ID text, or null if the ID is not a condition
+     */
+    public String getId() {
+        return id;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public String getCourse() {
+        return course;
+    }
+    
+    public Integer getYear() {
+        return year;
+    }
+    
+    /**
+     * True if the query has no conditions and so matches every student
+     */
+    public boolean isEmpty() {
+        return id == null && name == null && course == null && year == null;
+    }
+    
+    /**
+     * True if the student meets every condition of the query
+     */
+    boolean matches(Student student) {
+        return (year == null || student.getYear() == year) &&
+               (id == null || QueryPlanner.containsIgnoreCase(student.getId(), id)) &&
+               (name == null || QueryPlanner.containsIgnoreCase(student.getName(), name)) &&
+               (course == null || QueryPlanner.containsIgnoreCase(student.getCourse(), course));
+    }
+    
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null || getClass() != obj.getClass()) return false;
+        StudentQuery query = (StudentQuery) obj;
+        return Objects.equals(id, query.id) && Objects.equals(name, query.name) &&
+               Objects.equals(course, query.course) && Objects.equals(year, query.year);
+    }
+    
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, name, course, year);
+    }
+    
+    @Override
+    public String toString() {
+        return "StudentQuery{" +
+                "id='" + id + '\'' +
+                ", name='" + name + '\'' +
+                ", course='" + course + '\'' +
+                ", year=" + year +
+                '}';
+    }
+}
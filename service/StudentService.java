@@ -1,11 +1,16 @@
 package service;
 
+import data.BatchResult;
 import data.DataHandler;
-import data.FileDataHandler;
+import data.StudentChangeListener;
+import data.StudentColumns;
+import data.StudentSnapshot;
+import data.StorageEngine;
 import model.Student;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Service class for student operations
@@ -13,9 +18,21 @@ import java.util.stream.Collectors;
  */
 public class StudentService {
     private DataHandler dataHandler;
+    private final QueryPlanner planner;
+    private final SearchCache cache;
+    private final FuzzyNameIndex fuzzyNames;
+    private final CompletionIndex completions;
     
     public StudentService() {
-        this.dataHandler = new FileDataHandler();
+        this(StorageEngine.open());
+    }
+    
+    public StudentService(DataHandler dataHandler) {
+        this.dataHandler = dataHandler;
+        this.planner = new QueryPlanner(dataHandler, new CourseYearIndex(dataHandler), new TrigramIndex(dataHandler));
+        this.cache = new SearchCache(dataHandler);
+        this.fuzzyNames = new FuzzyNameIndex(dataHandler);
+        this.completions = new CompletionIndex(dataHandler);
     }
     
     // CRUD Operations
@@ -31,12 +48,118 @@ public class StudentService {
         return dataHandler.deleteStudent(id);
     }
     
+    /**
+     * Write pending changes and release the underlying data handler
+     */
+    public void close() {
+        dataHandler.close();
+    }
+    
+    // Bulk operations: rows are validated first, then stored with a single persist
+    public BatchResult addStudents(Collection<Student> students) {
+        return applyBatch(students, false);
+    }
+    
+    public BatchResult upsertStudents(Collection<Student> students) {
+        return applyBatch(students, true);
+    }
+    
+    private BatchResult applyBatch(Collection<Student> students, boolean upsert) {
+        BatchResult result = new BatchResult(students.size());
+        List<Student> valid = new ArrayList<>(students.size());
+        List<Integer> validRows = new ArrayList<>(students.size());
+        int row = 0;
+        for (Student student : students) {
+            String error = validate(student);
+            if (error != null) {
+                result.fail(row, error);
+            } else {
+                valid.add(student);
+                validRows.add(row);
+            }
+            row++;
+        }
+        
+        BatchResult stored = upsert ? dataHandler.upsertStudents(valid) : dataHandler.addStudents(valid);
+        for (int i = 0; i < stored.size(); i++) {
+            int originalRow = validRows.get(i);
+            if (stored.getOutcome(i) == BatchResult.Outcome.FAILED) {
+                result.fail(originalRow, stored.getMessage(i));
+            } else {
+                result.record(originalRow, stored.getOutcome(i));
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Check a student against the same rules as the entry form
+     *
+     * @return an error message, or null if the student is valid
+     */
+    public String validate(Student student) {
+        if (student == null) {
+            return "Missing student";
+        }
+        if (isBlank(student.getId()) || isBlank(student.getName()) || isBlank(student.getCourse()) ||
+            isBlank(student.getEmail()) || isBlank(student.getPhone())) {
+            return "All fields are required";
+        }
+        if (student.getYear() < 1 || student.getYear() > 10) {
+            return "Year must be between 1 and 10";
+        }
+        return null;
+    }
+    
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+    
     public Student getStudentById(String id) {
         return dataHandler.findStudentById(id);
     }
     
     public List<Student> getAllStudents() {
-        return dataHandler.getAllStudents();
+        return dataHandler.getSnapshot().getStudents();
+    }
+    
+    /**
+     * Immutable view of all students with the data version it was taken at
+     */
+    public StudentSnapshot getSnapshot() {
+        return dataHandler.getSnapshot();
+    }
+    
+    /**
+     * Subscribe to student changes; see StudentChangeListener for the delivery rules
+     */
+    public void addChangeListener(StudentChangeListener listener) {
+        dataHandler.addChangeListener(listener);
+    }
+    
+    public void removeChangeListener(StudentChangeListener listener) {
+        dataHandler.removeChangeListener(listener);
+    }
+    
+    /**
+     * Year and course columns for aggregate reports
+     */
+    public StudentColumns getColumns() {
+        return dataHandler.getColumns();
+    }
+    
+    /**
+     * Students with IDs from fromId to toId inclusive, in ID order
+     */
+    public List<Student> getStudentsByIdRange(String fromId, String toId) {
+        return dataHandler.findStudentsByIdRange(fromId, toId);
+    }
+    
+    /**
+     * One page of students in ID order; pass the last ID of the previous page to continue
+     */
+    public List<Student> getStudentsInIdOrder(String afterId, int limit) {
+        return dataHandler.getStudentsInIdOrder(afterId, limit);
     }
     
     // Search operations demonstrating Polymorphism (method overloading)
@@ -50,33 +173,111 @@ public class StudentService {
     }
     
     public List<Student> searchByName(String name) {
-        return dataHandler.getAllStudents().stream()
-                .filter(s -> s.getName().toLowerCase().contains(name.toLowerCase()))
-                .collect(Collectors.toList());
+        return search(StudentQuery.of(null, name, null, null));
     }
     
     public List<Student> searchByCourse(String course) {
-        return dataHandler.getAllStudents().stream()
-                .filter(s -> s.getCourse().toLowerCase().contains(course.toLowerCase()))
-                .collect(Collectors.toList());
+        return search(StudentQuery.of(null, null, course, null));
     }
     
     public List<Student> searchByYear(int year) {
-        return dataHandler.getAllStudents().stream()
-                .filter(s -> s.getYear() == year)
-                .collect(Collectors.toList());
+        return search(StudentQuery.of(null, null, null, year));
+    }
+    
+    /**
+     * Names that match despite misspellings, closest first; see FuzzyNameIndex for the rules
+     */
+    public List<Student> searchByNameFuzzy(String name) {
+        return searchFuzzy(StudentQuery.of(null, name, null, null));
+    }
+    
+    /**
+     * Like search, but the name is matched fuzzily and the results are ranked by edit distance
+     */
+    public List<Student> searchFuzzy(StudentQuery query) {
+        if (query.getName() == null) {
+            return search(query);
+        }
+        StudentQuery others = StudentQuery.of(query.getId(), null, query.getCourse(), query.getYear());
+        return fuzzyNames.search(query.getName(), others::matches);
+    }
+    
+    /**
+     * Up to limit distinct values of the field that start with the prefix (ignoring case), most common first
+     */
+    public List<String> suggest(SearchField field, String prefix, int limit) {
+        return completions.complete(field, prefix, limit);
     }
     
     // Combined search
     public List<Student> search(String id, String name, String course, Integer year) {
-        List<Student> allStudents = dataHandler.getAllStudents();
-        
-        return allStudents.stream()
-                .filter(s -> id == null || id.isEmpty() || s.getId().toLowerCase().contains(id.toLowerCase()))
-                .filter(s -> name == null || name.isEmpty() || s.getName().toLowerCase().contains(name.toLowerCase()))
-                .filter(s -> course == null || course.isEmpty() || s.getCourse().toLowerCase().contains(course.toLowerCase()))
-                .filter(s -> year == null || s.getYear() == year)
-                .collect(Collectors.toList());
+        return search(StudentQuery.of(id, name, course, year));
+    }
+    
+    /**
+     * Run a query through the planner, which picks an index or a scan and orders the filters
+     * Results are cached until a change touches a student the query matches
+     */
+    public List<Student> search(StudentQuery query) {
+        List<Student> cached = cache.get(query);
+        if (cached != null) {
+            return cached;
+        }
+        long stamp = cache.stamp();
+        List<Student> results = planner.execute(planner.plan(query));
+        cache.put(query, stamp, results);
+        return results;
+    }
+    
+    /**
+     * Hit, miss and eviction counts of the search result cache
+     */
+    public SearchCacheStats getSearchCacheStats() {
+        return cache.stats();
+    }
+    
+    /**
+     * One page of matches in the given order, skipping the first offset matches
+     */
+    public SearchPage search(StudentQuery query, StudentSort sort, int offset, int limit) {
+        checkPage(offset, limit);
+        return planner.page(planner.plan(query), orDefault(sort), null, offset, limit);
+    }
+    
+    /**
+     * The page that follows the one that returned the continuation token
+     *
+     * @throws IllegalArgumentException if the token was issued for another query or sort order
+     */
+    public SearchPage search(StudentQuery query, StudentSort sort, String continuationToken, int limit) {
+        checkPage(0, limit);
+        ContinuationToken after = ContinuationToken.decode(continuationToken, query, orDefault(sort));
+        return planner.page(planner.plan(query), orDefault(sort), after, 0, limit);
+    }
+    
+    private static StudentSort orDefault(StudentSort sort) {
+        return sort == null ? StudentSort.ID : sort;
+    }
+    
+    private static void checkPage(int offset, int limit) {
+        if (offset < 0 || limit <= 0) {
+            throw new IllegalArgumentException("Invalid page: offset " + offset + ", limit " + limit);
+        }
+    }
+    
+    /**
+     * Matches as a lazy stream in plan order; nothing is looked up beyond what the
+     * consumer takes, so limit, findFirst or anyMatch stop the search early
+     */
+    public Stream<Student> stream(StudentQuery query) {
+        return planner.stream(planner.plan(query));
+    }
+    
+    /**
+     * The plan search would use for the query, see QueryPlan.explain()
+     */
+    public QueryPlan explain(StudentQuery query) {
+        return planner.plan(query);
     }
 }
 
@@ -0,0 +1,25 @@
+package service;
+
+import model.Student;
+import java.util.Comparator;
+
+/**
+ * Sort orders for paged search results
+ * Every order ends with the student ID, so it is total and pages never overlap or skip
+ */
+public enum StudentSort {
+    ID(Comparator.comparing(Student::getId, Comparator.nullsFirst(Comparator.naturalOrder()))),
+    NAME(Comparator.comparing(Student::getName, Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER))),
+    COURSE(Comparator.comparing(Student::getCourse, Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER))),
+    YEAR(Comparator.comparingInt(Student::getYear));
+    
+    private final Comparator<Student> comparator;
+    
+    StudentSort(Comparator<Student> key) {
+        this.comparator = key.thenComparing(Student::getId, Comparator.nullsFirst(Comparator.naturalOrder()));
+    }
+    
+    public Comparator<Student> comparator() {
+        return comparator;
+    }
+}
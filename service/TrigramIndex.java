@@ -0,0 +1,256 @@
+package service;
+
+import data.DataHandler;
+import model.Student;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Trigram inverted index over the normalized ID, name and course of every student
+ *
+ * Each student gets a document number, and every three-character substring
+ * of its fields maps to a sorted posting list of document numbers. A
+ * substring query of three or more characters only needs students that
+ * contain all of its trigrams, so the posting lists are intersected (smallest
+ * first) and only the resulting candidates are checked against the real
+ * predicate. Shorter queries cannot use the index.
+ *
+ * Deleting or updating a student only retires its document number; the
+ * posting lists are compacted once retired numbers outnumber live ones.
+ *
+ * Memory overhead, measured on the heap with 1M students such as ("S123456",
+ * "Student Name 123456", "Course12"): about 180 MB, or 190 bytes per student.
+ * Roughly 130 bytes are posting entries (about 28 distinct trigrams per
+ * student at 4 bytes, plus the growth slack of the arrays), 55 bytes the ID to
+ * document map and 8 bytes the document table. Distinct trigrams number in
+ * the tens of thousands, so the posting list headers hardly count. The
+ * overhead grows with the length of names, not with the number of distinct
+ * values.
+ */
+class TrigramIndex extends StudentIndex {
+    
+    /**
+     * Indexed field; part of the posting key so the fields do not mix
+     */
+    enum Field {
+        ID, NAME, COURSE
+    }
+    
+    /**
+     * Growable, ascending list of document numbers
+     */
+    private static class Postings {
+        int[] docs = new int[4];
+        int size;
+        
+        void add(int doc) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+            }
+            docs[size++] = doc;
+        }
+    }
+    
+    private final Map<Long, Postings> postings = new HashMap<>();
+    private final Map<String, Integer> docOf = new HashMap<>();
+    private String[] ids = new String[1024];
+    private int docCount;
+    private int retired;
+    
+    TrigramIndex(DataHandler dataHandler) {
+        super(dataHandler);
+    }
+    
+    @Override
+    protected void clear() {
+        postings.clear();
+        docOf.clear();
+        ids = new String[1024];
+        docCount = 0;
+        retired = 0;
+    }
+    
+    @Override
+    protected void add(Student student) {
+        retire(student.getId());
+        if (docCount == ids.length) {
+            ids = Arrays.copyOf(ids, docCount * 2);
+        }
+        int doc = docCount++;
+        ids[doc] = student.getId();
+        docOf.put(student.getId(), doc);
+        index(Field.ID, student.getId(), doc);
+        index(Field.NAME, student.getName(), doc);
+        index(Field.COURSE, student.getCourse(), doc);
+    }
+    
+    @Override
+    protected void remove(Student student) {
+        retire(student.getId());
+    }
+    
+    private void retire(String id) {
+        Integer doc = docOf.remove(id);
+        if (doc != null) {
+            ids[doc] = null;
+            if (++retired > docOf.size() && retired > 1024) {
+                compact();
+            }
+        }
+    }
+    
+    private void index(Field field, String value, int doc) {
+        String text = normalize(value);
+        Set<Long> seen = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            seen.add(key(field, text, i));
+        }
+        for (Long key : seen) {
+            postings.computeIfAbsent(key, k -> new Postings()).add(doc);
+        }
+    }
+    
+    private static long key(Field field, String text, int i) {
+        return (long) field.ordinal() << 48 | (long) text.charAt(i) << 32 | (long) text.charAt(i + 1) << 16 | text.charAt(i + 2);
+    }
+    
+    /**
+     * Renumber live documents densely and drop retired ones from every posting list
+     */
+    private void compact() {
+        int[] renumbered = new int[docCount];
+        int live = 0;
+        for (int doc = 0; doc < docCount; doc++) {
+            if (ids[doc] != null) {
+                ids[live] = ids[doc];
+                docOf.put(ids[live], live);
+                renumbered[doc] = live++;
+            } else {
+                renumbered[doc] = -1;
+            }
+        }
+        Arrays.fill(ids, live, docCount, null);
+        docCount = live;
+        retired = 0;
+        
+        postings.values().removeIf(list -> {
+            int size = 0;
+            for (int i = 0; i < list.size; i++) {
+                int doc = renumbered[list.docs[i]];
+                if (doc >= 0) {
+                    list.docs[size++] = doc;
+                }
+            }
+            list.size = size;
+            return size == 0;
+        });
+    }
+    
+    private static Set<Long> keys(Map<Field, String> terms) {
+        Set<Long> keys = new LinkedHashSet<>();
+        for (Map.Entry<Field, String> term : terms.entrySet()) {
+            String text = normalize(term.getValue());
+            for (int i = 0; i + 3 <= text.length(); i++) {
+                keys.add(key(term.getKey(), text, i));
+            }
+        }
+        return keys;
+    }
+    
+    /**
+     * Upper bound for the number of candidates: the length of the shortest posting list
+     *
+     * @return the bound, or -1 if no text is long enough to use the index
+     */
+    int estimate(Map<Field, String> terms) {
+        Set<Long> keys = keys(terms);
+        if (keys.isEmpty()) {
+            return -1;
+        }
+        ensureCurrent();
+        synchronized (this) {
+            int min = Integer.MAX_VALUE;
+            for (Long key : keys) {
+                Postings list = postings.get(key);
+                min = Math.min(min, list != null ? list.size : 0);
+            }
+            return min;
+        }
+    }
+    
+    /**
+     * IDs of the students whose fields may contain all given texts (null for a field
+     * means no condition); the caller still has to check them
+     *
+     * @return the candidates, or null if no text is long enough to use the index
+     */
+    List<String> candidates(Map<Field, String> terms) {
+        Set<Long> keys = keys(terms);
+        if (keys.isEmpty()) {
+            return null;
+        }
+        
+        ensureCurrent();
+        synchronized (this) {
+            List<Postings> lists = new ArrayList<>(keys.size());
+            for (Long key : keys) {
+                Postings list = postings.get(key);
+                if (list == null) {
+                    return new ArrayList<>();
+                }
+                lists.add(list);
+            }
+            lists.sort(Comparator.comparingInt(list -> list.size));
+            
+            int[] docs = Arrays.copyOf(lists.get(0).docs, lists.get(0).size);
+            int size = docs.length;
+            for (int i = 1; i < lists.size() && size > 0; i++) {
+                size = intersect(docs, size, lists.get(i));
+            }
+            
+            List<String> result = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                String id = ids[docs[i]];
+                if (id != null) {
+                    result.add(id);
+                }
+            }
+            return result;
+        }
+    }
+    
+    /**
+     * Keep the documents in docs[0..size) that also occur in the list, galloping through
+     * the list since it is at least as long
+     *
+     * @return the new size
+     */
+    private static int intersect(int[] docs, int size, Postings list) {
+        int kept = 0;
+        int from = 0;
+        for (int i = 0; i < size && from < list.size; i++) {
+            int doc = docs[i];
+            int step = 1;
+            int to = from;
+            while (to < list.size && list.docs[to] < doc) {
+                from = to + 1;
+                to += step;
+                step <<= 1;
+            }
+            int found = Arrays.binarySearch(list.docs, from, Math.min(to + 1, list.size), doc);
+            if (found >= 0) {
+                docs[kept++] = doc;
+                from = found + 1;
+            } else {
+                from = -found - 1;
+            }
+        }
+        return kept;
+    }
+}